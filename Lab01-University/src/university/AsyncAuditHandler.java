@@ -0,0 +1,142 @@
+package university;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Logging handler that moves the audit I/O off the calling threads.
+ *
+ * Records are put in a bounded, lock-free ring buffer and a background
+ * thread forwards them to the target handler, which does the formatting
+ * and the actual writing. Producers never wait: when the buffer is full
+ * the record is dropped and counted.
+ *
+ * Example:
+ * <pre>
+ *   Logger logger = Logger.getLogger("University");
+ *   logger.setUseParentHandlers(false);
+ *   logger.addHandler(new AsyncAuditHandler(new FileHandler("audit.log"), 8192));
+ * </pre>
+ */
+public class AsyncAuditHandler extends Handler {
+
+	private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+	private final Handler target;
+	private final AtomicReferenceArray<LogRecord> ring;
+	private final int mask;
+	// next slot to be claimed by a producer
+	private final AtomicLong tail = new AtomicLong();
+	// next slot to be published, written only by the writer thread
+	private volatile long head;
+	private volatile long flushed;
+	private final LongAdder dropped = new LongAdder();
+	private volatile boolean closed;
+	private final Thread writer;
+
+	/**
+	 * Constructor
+	 *
+	 * @param target handler that will receive the records
+	 * @param capacity size of the buffer, rounded up to a power of two
+	 */
+	public AsyncAuditHandler(Handler target, int capacity) {
+		this.target = target;
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.ring = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.writer = new Thread(this::drain, "university-audit");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		if(closed || !isLoggable(record))
+			return;
+		// the caller is inferred from the stack, only possible on the calling thread
+		record.getSourceClassName();
+		record.getSourceMethodName();
+		long t;
+		do {
+			t = tail.get();
+			if(t - head >= ring.length()) {
+				dropped.increment();
+				return;
+			}
+		} while(!tail.compareAndSet(t, t+1));
+		ring.set((int)t & mask, record);
+	}
+
+	/**
+	 * Waits until all the queued records have been passed to the target
+	 * handler, then flushes it.
+	 */
+	@Override
+	public void flush() {
+		while(head < tail.get() && writer.isAlive())
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		target.flush();
+	}
+
+	/**
+	 * Publishes the pending records, stops the writer and closes the target handler.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		target.close();
+	}
+
+	/**
+	 * @return number of records passed to the target handler
+	 */
+	public long getFlushed() {
+		return flushed;
+	}
+
+	/**
+	 * @return number of records discarded because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	private void drain() {
+		while(true) {
+			int i = (int)head & mask;
+			LogRecord r = ring.get(i);
+			if(r != null) {
+				try {
+					target.publish(r);
+				} catch(RuntimeException e) {
+					// a failing record must not stop the writer
+					reportError("Audit record not published", e, ErrorManager.WRITE_FAILURE);
+				}
+				ring.set(i, null);
+				flushed++;
+				head++;
+			} else if(closed && head == tail.get()) {
+				break;
+			} else {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+		}
+		try {
+			target.flush();
+		} catch(RuntimeException e) {
+			reportError("Audit handler not flushed", e, ErrorManager.FLUSH_FAILURE);
+		}
+	}
+}
@@ -1,14 +1,27 @@
 package university;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
 public class Course {
 	
-	private final static int MAX_COURSE_STUDENTS=100;
+	private final static int INITIAL_COURSE_STUDENTS=8;
 	
 	private String courseName;
 	private String teacherName;
 	private int courseId;
-	private Student[] students = new Student[MAX_COURSE_STUDENTS];
+	private Student[] students = new Student[INITIAL_COURSE_STUDENTS];
 	private int enrolledStudents;
+	// running aggregates of the marks > 0
+	private int marksSum;
+	private int marksCount;
+	// rendered list of attendees, null when it has to be rebuilt
+	private String attendeesCache;
+	// maximum number of attendees, 0 means unlimited
+	private int capacity;
+	// students waiting for a seat, in order of arrival
+	private LinkedHashSet<Student> waitlist = new LinkedHashSet<>();
 	
 	
 	public Course() {
@@ -24,13 +37,107 @@ public class Course {
 		return students;
 	}
 
+	public int getEnrolled() {
+		return enrolledStudents;
+	}
+
 	public void enrollNewStudent(Student studentId) {
+		if(this.enrolledStudents==this.students.length)
+			this.students = Arrays.copyOf(this.students, this.enrolledStudents*2);
 		this.students[this.enrolledStudents] = studentId;
+		this.attendeesCache = null;
 		this.enrolledStudents++;
 	}
 
+	/**
+	 * Removes a student from the attendees, keeping the order of the others
+	 * 
+	 * @return {@code true} if the student was attending the course
+	 */
+	public boolean removeStudent(Student s) {
+		for(int i=0; i<this.enrolledStudents; i++) {
+			if(this.students[i]==s) {
+				System.arraycopy(this.students, i+1, this.students, i, this.enrolledStudents-i-1);
+				this.students[--this.enrolledStudents] = null;
+				this.attendeesCache = null;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	public boolean hasFreeSeat() {
+		return capacity<=0 || enrolledStudents<capacity;
+	}
+	
+	public boolean isWaitlisted(Student s) {
+		return waitlist.contains(s);
+	}
+	
+	public void addToWaitlist(Student s) {
+		waitlist.add(s);
+	}
+	
+	public boolean removeFromWaitlist(Student s) {
+		return waitlist.remove(s);
+	}
+	
+	/**
+	 * @return the first student in the waitlist, {@code null} if empty
+	 */
+	public Student firstWaitlisted() {
+		Iterator<Student> it = waitlist.iterator();
+		return it.hasNext() ? it.next() : null;
+	}
+	
+	public Student[] getWaitlist() {
+		return waitlist.toArray(new Student[0]);
+	}
+
 	public void setEnrolled(int enrolled) {
 		this.enrolledStudents = enrolled;
+		this.attendeesCache = null;
+	}
+
+	/**
+	 * Replaces a mark in the running aggregates
+	 * 
+	 * @param oldMark previous mark of the student (0 if none)
+	 * @param newMark new mark of the student
+	 */
+	public void updateMark(int oldMark, int newMark) {
+		if(oldMark>0) {
+			this.marksSum-=oldMark;
+			this.marksCount--;
+		}
+		if(newMark>0) {
+			this.marksSum+=newMark;
+			this.marksCount++;
+		}
+	}
+	
+	public int getMarksCount() {
+		return marksCount;
+	}
+	
+	public float getAverage() {
+		return (float)marksSum/marksCount;
+	}
+
+	public String getAttendeesCache() {
+		return attendeesCache;
+	}
+	
+	public void setAttendeesCache(String attendees) {
+		this.attendeesCache = attendees;
 	}
 
 	public String getCourseName() {
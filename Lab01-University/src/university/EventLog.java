@@ -0,0 +1,507 @@
+package university;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only, binary log of the changes applied to a {@link University}.
+ *
+ * Once attached with {@link University#setEventLog(EventLog)} every enrollment,
+ * activation, registration (admitted or waitlisted), exam, withdrawal and
+ * capacity change is appended as an event with a sequence number; admissions
+ * from a waitlist follow from the other events and are not logged.
+ * Events are buffered in memory and, once {@code syncEvery} of them are pending
+ * or the oldest one has waited {@code maxDelay} milliseconds,
+ * a background thread writes and forces them to disk, so that the operations
+ * never wait for the I/O; the events are appended after the change has been
+ * applied and appending never fails, a failed write is retried in the background
+ * and reported by {@link #getFailure()}, {@link #sync()} and {@link #close()};
+ * consumers read the written events through independent {@link Cursor}s
+ * and can resume from a saved position.
+ *
+ * Record layout (big endian): {@code length sequence type payload}, where
+ * the payload depends on the type and strings are length + UTF-8 bytes
+ * (length -1 for {@code null}).
+ */
+public class EventLog implements Closeable {
+
+	public static final byte ENROLL = 1;
+	public static final byte ACTIVATE = 2;
+	public static final byte REGISTER = 3;
+	public static final byte EXAM = 4;
+	public static final byte WITHDRAW = 5;
+	public static final byte CAPACITY = 6;
+
+	private static final int HEADER = Integer.BYTES + Long.BYTES + 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long RETRY_MILLIS = 100;
+	private static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+
+	private final FileChannel ch;
+	private final int syncEvery;
+	private final long maxDelayNanos;
+	// events being appended, guarded by this
+	private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+	private int pending;
+	// time at which the oldest pending event was appended
+	private long pendingSince;
+	private long nextSequence;
+	private boolean closed;
+	// events being written, guarded by writeLock; after a failed write
+	// it keeps the bytes still to be written, in front of the next batch
+	private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+	private boolean unforced;
+	private final Object writeLock = new Object();
+	// last failure of the background writes, null once a write succeeds
+	private volatile IOException failure;
+	// file position up to which the events are visible to the cursors
+	private volatile long written;
+	private final Thread syncer;
+
+	/**
+	 * Opens a log, creating the file if needed. Existing events are kept;
+	 * an incomplete event at the end of the file (e.g. after a crash) is discarded.
+	 *
+	 * @param file the log file
+	 * @param syncEvery number of events after which the buffer is written and forced to disk
+	 * @throws IOException in case of I/O errors
+	 */
+	public EventLog(Path file, int syncEvery) throws IOException {
+		this(file, syncEvery, DEFAULT_MAX_DELAY_MILLIS);
+	}
+
+	/**
+	 * Opens a log, creating the file if needed. Existing events are kept;
+	 * an incomplete event at the end of the file (e.g. after a crash) is discarded.
+	 *
+	 * @param file the log file
+	 * @param syncEvery number of events after which the buffer is written and forced to disk
+	 * @param maxDelay milliseconds after which pending events are written and forced
+	 * 		to disk even if fewer than {@code syncEvery}
+	 * @throws IOException in case of I/O errors
+	 */
+	public EventLog(Path file, int syncEvery, long maxDelay) throws IOException {
+		this.ch = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.syncEvery = Math.max(1, syncEvery);
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxDelay));
+		this.written = 0;
+		this.nextSequence = 1;
+		Cursor c = new Cursor(0);
+		Event e;
+		while((e = c.readAt(ch.size())) != null)
+			this.nextSequence = e.getSequence() + 1;
+		this.written = c.position();
+		ch.truncate(this.written);
+		ch.position(this.written);
+		this.syncer = new Thread(this::syncBatches, "university-event-log");
+		this.syncer.setDaemon(true);
+		this.syncer.start();
+	}
+
+	synchronized void enrolled(int studentId, String first, String last) {
+		byte[] f = bytes(first), l = bytes(last);
+		begin(ENROLL, Integer.BYTES + 2*Integer.BYTES + length(f) + length(l));
+		buf.putInt(studentId);
+		putBytes(f);
+		putBytes(l);
+		end();
+	}
+
+	synchronized void activated(int courseCode, String title, String teacher) {
+		byte[] t = bytes(title), p = bytes(teacher);
+		begin(ACTIVATE, Integer.BYTES + 2*Integer.BYTES + length(t) + length(p));
+		buf.putInt(courseCode);
+		putBytes(t);
+		putBytes(p);
+		end();
+	}
+
+	synchronized void registered(int studentId, int courseCode) {
+		begin(REGISTER, 2*Integer.BYTES);
+		buf.putInt(studentId);
+		buf.putInt(courseCode);
+		end();
+	}
+
+	synchronized void examined(int studentId, int courseCode, int grade) {
+		begin(EXAM, 3*Integer.BYTES);
+		buf.putInt(studentId);
+		buf.putInt(courseCode);
+		buf.putInt(grade);
+		end();
+	}
+
+	synchronized void withdrawn(int studentId, int courseCode) {
+		begin(WITHDRAW, 2*Integer.BYTES);
+		buf.putInt(studentId);
+		buf.putInt(courseCode);
+		end();
+	}
+
+	synchronized void capacityChanged(int courseCode, int capacity) {
+		begin(CAPACITY, 2*Integer.BYTES);
+		buf.putInt(courseCode);
+		buf.putInt(capacity);
+		end();
+	}
+
+	/**
+	 * Writes the buffered events and forces them to disk
+	 *
+	 * @throws IOException in case of I/O errors
+	 */
+	public void sync() throws IOException {
+		synchronized(writeLock) {
+			// bytes left by a failed write come first
+			write(out);
+			synchronized(this) {
+				if(pending==0 && !unforced)
+					return;
+				ByteBuffer batch = buf;
+				buf = out;
+				out = batch;
+				pending = 0;
+			}
+			unforced = true;
+			write(out);
+			ch.force(false);
+			unforced = false;
+			written = ch.position();
+			failure = null;
+		}
+	}
+
+	/**
+	 * Writes a buffer, leaving in it the bytes not written in case of errors
+	 */
+	private void write(ByteBuffer b) throws IOException {
+		b.flip();
+		try {
+			while(b.hasRemaining())
+				ch.write(b);
+		} finally {
+			b.compact();
+		}
+	}
+
+	/**
+	 * Body of the background thread, syncing the batches as they fill up
+	 */
+	private void syncBatches() {
+		while(true) {
+			synchronized(this) {
+				try {
+					if(failure!=null && !closed)
+						wait(RETRY_MILLIS);
+					else
+						while(!closed && pending<syncEvery) {
+							if(pending==0) {
+								wait();
+								continue;
+							}
+							long left = pendingSince + maxDelayNanos - System.nanoTime();
+							if(left<=0)
+								break;
+							wait(TimeUnit.NANOSECONDS.toMillis(left) + 1);
+						}
+				} catch(InterruptedException e) {
+					return;
+				}
+				if(closed)
+					return;
+			}
+			try {
+				sync();
+			} catch(IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * @return the failure of the last background write, {@code null} if it succeeded;
+	 * 		the events not written are kept and written again by the next write
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return sequence number of the last appended event, 0 if none
+	 */
+	public synchronized long getLastSequence() {
+		return nextSequence - 1;
+	}
+
+	/**
+	 * Creates a cursor starting from the first event
+	 *
+	 * @return the new cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor(0);
+	}
+
+	/**
+	 * Creates a cursor resuming from a position previously
+	 * returned by {@link Cursor#position()}
+	 *
+	 * @param position position in the log
+	 * @return the new cursor
+	 */
+	public Cursor cursor(long position) {
+		return new Cursor(position);
+	}
+
+	/**
+	 * Applies all the events in the log to a university.
+	 * The university should not have an event log attached,
+	 * otherwise the events would be logged again.
+	 *
+	 * @param u the target university
+	 * @throws IOException in case of read errors or if the events do not match the university
+	 */
+	public void replay(University u) throws IOException {
+		Cursor c = cursor();
+		Event e;
+		while((e = c.next()) != null) {
+			switch(e.getType()) {
+			case ENROLL:
+				if(u.addStudent(e.getFirst(), e.getSecond()).getStudentID()!=e.getStudentId())
+					throw new IOException("Event " + e.getSequence() + ": student ID mismatch");
+				break;
+			case ACTIVATE:
+				if(u.addCourse(e.getFirst(), e.getSecond()).getCourseId()!=e.getCourseCode())
+					throw new IOException("Event " + e.getSequence() + ": course code mismatch");
+				break;
+			case REGISTER:
+				u.addRegistration(e.getStudentId(), e.getCourseCode());
+				break;
+			case EXAM:
+				u.recordExam(e.getStudentId(), e.getCourseCode(), e.getGrade());
+				break;
+			case WITHDRAW:
+				u.removeRegistration(e.getStudentId(), e.getCourseCode());
+				u.promote(u.getCourse(e.getCourseCode()));
+				break;
+			case CAPACITY:
+				u.changeCapacity(e.getCourseCode(), e.getCapacity());
+				u.promote(u.getCourse(e.getCourseCode()));
+				break;
+			default:
+				throw new IOException("Event " + e.getSequence() + ": unknown type " + e.getType());
+			}
+		}
+	}
+
+	/**
+	 * Syncs the pending events and closes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			syncer.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sync();
+		ch.close();
+	}
+
+	private void begin(byte type, int payload) {
+		int size = HEADER + payload;
+		if(buf.remaining() < size) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity()*2, buf.position() + size));
+			buf.flip();
+			bigger.put(buf);
+			buf = bigger;
+		}
+		buf.putInt(size);
+		buf.putLong(nextSequence++);
+		buf.put(type);
+	}
+
+	private void end() {
+		if(++pending == 1)
+			pendingSince = System.nanoTime();
+		if(pending == 1 || pending == syncEvery)
+			notifyAll();
+	}
+
+	private void putBytes(byte[] b) {
+		if(b==null) {
+			buf.putInt(-1);
+			return;
+		}
+		buf.putInt(b.length);
+		buf.put(b);
+	}
+
+	private static byte[] bytes(String s) {
+		return s==null ? null : s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int length(byte[] b) {
+		return b==null ? 0 : b.length;
+	}
+
+	/**
+	 * Reads the events of the log in order.
+	 * Each subscriber should use its own cursor.
+	 */
+	public class Cursor {
+		private long position;
+		private ByteBuffer rec = ByteBuffer.allocate(256);
+
+		private Cursor(long position) {
+			this.position = position;
+		}
+
+		/**
+		 * @return the position of the next event, to be used to resume later
+		 */
+		public long position() {
+			return position;
+		}
+
+		/**
+		 * Reads the next event
+		 *
+		 * @return the next event, or {@code null} if no more events have been written yet
+		 * @throws IOException in case of read errors
+		 */
+		public Event next() throws IOException {
+			return readAt(written);
+		}
+
+		private Event readAt(long limit) throws IOException {
+			if(position + Integer.BYTES > limit)
+				return null;
+			rec.clear().limit(Integer.BYTES);
+			read(position);
+			int size = rec.getInt(0);
+			if(size < HEADER || position + size > limit)
+				return null;
+			if(rec.capacity() < size)
+				rec = ByteBuffer.allocate(size);
+			rec.clear().limit(size);
+			read(position);
+			rec.flip().position(Integer.BYTES);
+			Event e = new Event(rec);
+			position += size;
+			return e;
+		}
+
+		private void read(long from) throws IOException {
+			while(rec.hasRemaining()) {
+				if(ch.read(rec, from + rec.position()) < 0)
+					throw new IOException("Unexpected end of event log");
+			}
+		}
+	}
+
+	/**
+	 * A single change read from the log
+	 */
+	public static class Event {
+		private final long sequence;
+		private final byte type;
+		private int studentId;
+		private int courseCode;
+		private int grade;
+		private int capacity;
+		private String first;
+		private String second;
+
+		private Event(ByteBuffer b) {
+			this.sequence = b.getLong();
+			this.type = b.get();
+			switch(type) {
+			case ENROLL:
+				studentId = b.getInt();
+				first = getString(b);
+				second = getString(b);
+				break;
+			case ACTIVATE:
+				courseCode = b.getInt();
+				first = getString(b);
+				second = getString(b);
+				break;
+			case REGISTER:
+				studentId = b.getInt();
+				courseCode = b.getInt();
+				break;
+			case EXAM:
+				studentId = b.getInt();
+				courseCode = b.getInt();
+				grade = b.getInt();
+				break;
+			case WITHDRAW:
+				studentId = b.getInt();
+				courseCode = b.getInt();
+				break;
+			case CAPACITY:
+				courseCode = b.getInt();
+				capacity = b.getInt();
+				break;
+			default:
+			}
+		}
+
+		private static String getString(ByteBuffer b) {
+			int n = b.getInt();
+			if(n<0)
+				return null;
+			byte[] bytes = new byte[n];
+			b.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+		/**
+		 * @return one of {@link EventLog#ENROLL}, {@link EventLog#ACTIVATE},
+		 * 		{@link EventLog#REGISTER}, {@link EventLog#EXAM},
+		 * 		{@link EventLog#WITHDRAW}, {@link EventLog#CAPACITY}
+		 */
+		public byte getType() {
+			return type;
+		}
+		public int getStudentId() {
+			return studentId;
+		}
+		public int getCourseCode() {
+			return courseCode;
+		}
+		public int getGrade() {
+			return grade;
+		}
+		public int getCapacity() {
+			return capacity;
+		}
+		/**
+		 * @return first name of the student or title of the course
+		 */
+		public String getFirst() {
+			return first;
+		}
+		/**
+		 * @return last name of the student or teacher of the course
+		 */
+		public String getSecond() {
+			return second;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package university;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Columnar store of the exam grades.
+ *
+ * Each grade is a row made of three parallel primitive columns:
+ * student ID, course code and grade. A re-graded exam overwrites its row.
+ *
+ * The analytics are plain loops over the columns, so that
+ * statistics across many students do not chase object references.
+ * Only grades greater than zero are considered as taken exams.
+ *
+ * Rows are appended and updated without locks, so exams of different
+ * courses never contend; the analytics do not lock either and may miss
+ * the rows being appended while they run.
+ */
+public class GradeStore {
+
+	private final static int CHUNK_BITS=12;
+	private final static int CHUNK_SIZE=1<<CHUNK_BITS;
+	public final static int MAX_GRADE=30;
+	public final static int PASS_GRADE=18;
+	// the grade column is written last with release semantics, so a reader
+	// seeing a grade also sees the IDs of its row
+	private final static VarHandle GRADE = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * A block of rows, allocated once and never moved
+	 */
+	private static class Chunk {
+		final int[] studentIds = new int[CHUNK_SIZE];
+		final int[] courseIds = new int[CHUNK_SIZE];
+		final int[] grades = new int[CHUNK_SIZE];
+	}
+
+	// rows are claimed with the cursor and written into their chunk without locks
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicReference<Chunk[]> chunks = new AtomicReference<>(new Chunk[] { new Chunk() });
+
+	/**
+	 * Adds a new grade
+	 *
+	 * @return the row assigned to the grade
+	 */
+	int append(int studentId, int courseId, int grade) {
+		int row = size.getAndIncrement();
+		Chunk c = chunk(row>>>CHUNK_BITS);
+		int i = row & (CHUNK_SIZE-1);
+		c.studentIds[i] = studentId;
+		c.courseIds[i] = courseId;
+		GRADE.setRelease(c.grades, i, grade);
+		return row;
+	}
+
+	/**
+	 * Replaces the grade in a given row
+	 */
+	void update(int row, int grade) {
+		GRADE.setRelease(chunk(row>>>CHUNK_BITS).grades, row & (CHUNK_SIZE-1), grade);
+	}
+
+	/**
+	 * @return the chunk with the given index, allocated if missing
+	 */
+	private Chunk chunk(int k) {
+		while(true) {
+			Chunk[] dir = chunks.get();
+			if(k<dir.length)
+				return dir[k];
+			Chunk[] bigger = Arrays.copyOf(dir, k+1);
+			for(int j=dir.length; j<bigger.length; j++)
+				bigger[j] = new Chunk();
+			chunks.compareAndSet(dir, bigger);
+		}
+	}
+
+	/**
+	 * @return number of the given rows falling in the chunk with the given index
+	 */
+	private static int rowsIn(int k, int rows) {
+		return Math.min(CHUNK_SIZE, rows-(k<<CHUNK_BITS));
+	}
+
+	/**
+	 * @return number of rows in the store
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Computes the average grade of a course
+	 *
+	 * @param courseId course code
+	 * @return the average, or {@code NaN} if no exam was taken
+	 */
+	public double courseAverage(int courseId) {
+		long sum=0;
+		int n=0;
+		int rows = size.get();
+		Chunk[] dir = chunks.get();
+		for(int k=0; k<dir.length && (k<<CHUNK_BITS)<rows; k++) {
+			Chunk c = dir[k];
+			for(int i=0, m=rowsIn(k, rows); i<m; i++) {
+				int g = (int)GRADE.getAcquire(c.grades, i);
+				int hit = (c.courseIds[i]==courseId & g>0) ? 1 : 0;
+				sum += g*hit;
+				n += hit;
+			}
+		}
+		return (double)sum/n;
+	}
+
+	/**
+	 * Computes the average grade of all the courses in one pass
+	 *
+	 * @param firstCourseId code of the first course
+	 * @param nCourses number of courses
+	 * @return the averages indexed by (code - firstCourseId), {@code NaN} if no exam was taken
+	 */
+	public double[] courseAverages(int firstCourseId, int nCourses) {
+		long[] sums = new long[nCourses];
+		int[] counts = new int[nCourses];
+		int rows = size.get();
+		Chunk[] dir = chunks.get();
+		for(int k=0; k<dir.length && (k<<CHUNK_BITS)<rows; k++) {
+			Chunk ch = dir[k];
+			for(int i=0, m=rowsIn(k, rows); i<m; i++) {
+				int g = (int)GRADE.getAcquire(ch.grades, i);
+				int c = ch.courseIds[i]-firstCourseId;
+				if(g>0 && c>=0 && c<nCourses) {
+					sums[c] += g;
+					counts[c]++;
+				}
+			}
+		}
+		double[] avg = new double[nCourses];
+		for(int c=0; c<nCourses; c++)
+			avg[c] = (double)sums[c]/counts[c];
+		return avg;
+	}
+
+	/**
+	 * Computes the award score of all the students in one pass:
+	 * the average grade plus the number of taken exams divided by
+	 * the number of attended courses, multiplied by 10.
+	 *
+	 * @param firstStudentId ID of the first student
+	 * @param attended number of courses attended by each student, indexed by (ID - firstStudentId)
+	 * @return the scores indexed by (ID - firstStudentId), {@code NaN} if no exam was taken
+	 */
+	public float[] scores(int firstStudentId, int[] attended) {
+		int[] sums = new int[attended.length];
+		int[] counts = new int[attended.length];
+		int rows = size.get();
+		Chunk[] dir = chunks.get();
+		for(int k=0; k<dir.length && (k<<CHUNK_BITS)<rows; k++) {
+			Chunk c = dir[k];
+			for(int i=0, m=rowsIn(k, rows); i<m; i++) {
+				int g = (int)GRADE.getAcquire(c.grades, i);
+				int s = c.studentIds[i]-firstStudentId;
+				if(g>0 && s>=0 && s<attended.length) {
+					sums[s] += g;
+					counts[s]++;
+				}
+			}
+		}
+		float[] scores = new float[attended.length];
+		for(int s=0; s<scores.length; s++) {
+			float n = counts[s];
+			scores[s] = sums[s]/n + ((n/attended[s])*10);
+		}
+		return scores;
+	}
+
+	/**
+	 * Computes the distribution of the grades of a course
+	 *
+	 * @param courseId course code
+	 * @return the number of exams per grade, indexed by grade (0 to {@link #MAX_GRADE});
+	 * 		grades above {@link #MAX_GRADE} are counted as {@link #MAX_GRADE}
+	 */
+	public int[] histogram(int courseId) {
+		int[] h = new int[MAX_GRADE+1];
+		int rows = size.get();
+		Chunk[] dir = chunks.get();
+		for(int k=0; k<dir.length && (k<<CHUNK_BITS)<rows; k++) {
+			Chunk c = dir[k];
+			for(int i=0, m=rowsIn(k, rows); i<m; i++) {
+				int g = (int)GRADE.getAcquire(c.grades, i);
+				if(g>0 && c.courseIds[i]==courseId)
+					h[Math.min(g, MAX_GRADE)]++;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Computes a percentile of the grades of a course (nearest rank)
+	 *
+	 * @param courseId course code
+	 * @param p percentile, between 0 and 100
+	 * @return the grade at the given percentile, or 0 if no exam was taken
+	 */
+	public int percentile(int courseId, double p) {
+		int[] h = histogram(courseId);
+		int n=0;
+		for(int count : h)
+			n+=count;
+		if(n==0)
+			return 0;
+		int rank = Math.max(1, (int)Math.ceil(p/100*n));
+		for(int g=1; g<=MAX_GRADE; g++) {
+			rank -= h[g];
+			if(rank<=0)
+				return g;
+		}
+		return MAX_GRADE;
+	}
+
+	/**
+	 * Computes the fraction of exams of a course with a passing grade
+	 * (at least {@link #PASS_GRADE})
+	 *
+	 * @param courseId course code
+	 * @return the pass rate, or {@code NaN} if no exam was taken
+	 */
+	public double passRate(int courseId) {
+		int[] h = histogram(courseId);
+		int n=0, passed=0;
+		for(int g=1; g<=MAX_GRADE; g++) {
+			n+=h[g];
+			if(g>=PASS_GRADE)
+				passed+=h[g];
+		}
+		return (double)passed/n;
+	}
+}
@@ -0,0 +1,213 @@
+package university;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot format of a {@link University}.
+ *
+ * Layout (big endian, strings are length + UTF-8 bytes, length -1 for {@code null}):
+ * <pre>
+ * MAGIC VERSION name rectorName rectorSurname
+ * nCourses  { title teacher }
+ * nStudents { first last nAttended { courseCode mark } }
+ * nCourses  { nEnrolled { studentId } capacity nWaitlisted { studentId } }
+ * </pre>
+ * Study plans and rosters are stored separately so that both keep
+ * their registration order when restored.
+ */
+class Snapshot {
+
+	private static final int MAGIC = 0x554E4956; // "UNIV"
+	private static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private Snapshot() {}
+
+	static void write(University u, Path file) throws IOException {
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer w = new Writer(ch);
+			w.putInt(MAGIC);
+			w.putInt(VERSION);
+			w.putString(u.getName());
+			w.putString(u.getRectorName());
+			w.putString(u.getRectorSurname());
+
+			int nCourses = u.getCourseCount();
+			int nStudents = u.getStudentCount();
+
+			w.putInt(nCourses);
+			for(int i=0; i<nCourses; i++) {
+				Course c = u.getCourse(University.FIRST_COURSE_ID+i);
+				w.putString(c.getCourseName());
+				w.putString(c.getTeacherName());
+			}
+
+			w.putInt(nStudents);
+			for(int i=0; i<nStudents; i++) {
+				Student s = u.getStudent(University.FIRST_STUDENT_ID+i);
+				synchronized(s) {
+					w.putString(s.getName());
+					w.putString(s.getSurname());
+					int n = s.getNumberOfCousesAttended();
+					Course[] plan = s.getCourses();
+					int[] marks = s.getAllMarks();
+					w.putInt(n);
+					for(int j=0; j<n; j++) {
+						w.putInt(plan[j].getCourseId());
+						w.putInt(marks[j]);
+					}
+				}
+			}
+
+			w.putInt(nCourses);
+			for(int i=0; i<nCourses; i++) {
+				Course c = u.getCourse(University.FIRST_COURSE_ID+i);
+				synchronized(c) {
+					int n = c.getEnrolled();
+					Student[] roster = c.getStudents();
+					w.putInt(n);
+					for(int j=0; j<n; j++)
+						w.putInt(roster[j].getStudentID());
+					Student[] waitlist = c.getWaitlist();
+					w.putInt(c.getCapacity());
+					w.putInt(waitlist.length);
+					for(Student s : waitlist)
+						w.putInt(s.getStudentID());
+				}
+			}
+			w.flush();
+		}
+	}
+
+	static University read(Path file) throws IOException {
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if(b.remaining()<8 || b.getInt()!=MAGIC)
+				throw new IOException("Not a university snapshot: " + file);
+			int version = b.getInt();
+			if(version!=VERSION)
+				throw new IOException("Unsupported snapshot version " + version);
+
+			University u = new University(getString(b));
+			u.setRector(getString(b), getString(b));
+
+			int nCourses = b.getInt();
+			u.ensureCapacity(0, nCourses);
+			for(int i=0; i<nCourses; i++)
+				u.addCourse(getString(b), getString(b));
+
+			int nStudents = b.getInt();
+			u.ensureCapacity(nStudents, 0);
+			// marks are applied once all registrations are in place
+			int[][] plans = new int[nStudents][];
+			for(int i=0; i<nStudents; i++) {
+				Student s = u.addStudent(getString(b), getString(b));
+				int n = b.getInt();
+				int[] plan = new int[n*2];
+				for(int j=0; j<n; j++) {
+					plan[2*j] = b.getInt();
+					plan[2*j+1] = b.getInt();
+					s.attendNewCourse(u.getCourse(plan[2*j]));
+				}
+				plans[i] = plan;
+			}
+
+			if(b.getInt()!=nCourses)
+				throw new IOException("Corrupted snapshot: " + file);
+			for(int i=0; i<nCourses; i++) {
+				Course c = u.getCourse(University.FIRST_COURSE_ID+i);
+				int n = b.getInt();
+				for(int j=0; j<n; j++)
+					c.enrollNewStudent(u.getStudent(b.getInt()));
+				c.setCapacity(b.getInt());
+				n = b.getInt();
+				for(int j=0; j<n; j++)
+					c.addToWaitlist(u.getStudent(b.getInt()));
+			}
+
+			// same bookkeeping as recordExam(), but each student is ranked once
+			GradeStore grades = u.getGradeStore();
+			for(int i=0; i<nStudents; i++) {
+				int[] plan = plans[i];
+				int id = University.FIRST_STUDENT_ID+i;
+				Student s = u.getStudent(id);
+				for(int j=0; j<plan.length; j+=2) {
+					int code = plan[j], mark = plan[j+1];
+					if(mark>0) {
+						s.setMark(code, mark);
+						u.getCourse(code).updateMark(0, mark);
+						s.setGradeRow(code, grades.append(id, code, mark));
+					}
+				}
+				u.rank(s);
+			}
+			return u;
+		} catch(RuntimeException e) {
+			// buffer underflows and invalid IDs
+			throw new IOException("Corrupted snapshot: " + file, e);
+		}
+	}
+
+	private static String getString(ByteBuffer b) {
+		int len = b.getInt();
+		if(len<0)
+			return null;
+		byte[] bytes = new byte[len];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Buffers the values and writes them to the channel in large blocks
+	 */
+	private static class Writer {
+		private final FileChannel ch;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Writer(FileChannel ch) {
+			this.ch = ch;
+		}
+
+		void putInt(int v) throws IOException {
+			ensure(Integer.BYTES);
+			buf.putInt(v);
+		}
+
+		void putString(String s) throws IOException {
+			if(s==null) {
+				putInt(-1);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			if(bytes.length>buf.capacity()) {
+				flush();
+				ByteBuffer big = ByteBuffer.wrap(bytes);
+				while(big.hasRemaining())
+					ch.write(big);
+			} else {
+				ensure(bytes.length);
+				buf.put(bytes);
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while(buf.hasRemaining())
+				ch.write(buf);
+			buf.clear();
+		}
+
+		private void ensure(int n) throws IOException {
+			if(buf.remaining()<n)
+				flush();
+		}
+	}
+}
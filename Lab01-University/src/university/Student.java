@@ -11,14 +11,23 @@ import java.util.Arrays;
  */
 public class Student {
 	
-	private final static int MAX_ATTENDANCES=25;
+	private final static int INITIAL_ATTENDANCES=4;
 	
 	private String name;
 	private String surname;
 	private int studentID;
-	private Course courses[] = new Course[MAX_ATTENDANCES];
-	private int coursesMarks[] = new int[MAX_ATTENDANCES];;
+	private Course courses[] = new Course[INITIAL_ATTENDANCES];
+	private int coursesMarks[] = new int[INITIAL_ATTENDANCES];
+	// row of each mark in the university grade store, -1 if none
+	private int coursesGradeRows[] = new int[INITIAL_ATTENDANCES];
 	private int numberOfCoursesAttended;
+	// running aggregates of the marks > 0
+	private int marksSum;
+	private int marksCount;
+	// award score, updated by the university when the student is re-ranked
+	private float score;
+	// rendered study plan, null when it has to be rebuilt
+	private String studyPlanCache;
 	
 	public Student() {
 		this.name="";
@@ -52,18 +61,124 @@ public class Student {
 		this.studentID = studentID;
 	}
 	public void attendNewCourse(Course c) {
-		
+		if(this.numberOfCoursesAttended==this.courses.length) {
+			this.courses = Arrays.copyOf(this.courses, this.numberOfCoursesAttended*2);
+			this.coursesMarks = Arrays.copyOf(this.coursesMarks, this.numberOfCoursesAttended*2);
+			this.coursesGradeRows = Arrays.copyOf(this.coursesGradeRows, this.numberOfCoursesAttended*2);
+		}
 		this.courses[this.numberOfCoursesAttended]=c;
 		this.coursesMarks[this.numberOfCoursesAttended]=0;
+		this.coursesGradeRows[this.numberOfCoursesAttended]=-1;
+		this.studyPlanCache=null;
 		this.numberOfCoursesAttended++;
 		
 	}
-	public void setMark(int courseId, int grade) {
+	/**
+	 * Records the mark for a course and updates the running aggregates
+	 * 
+	 * @return the previous mark, or -1 if the student does not attend the course
+	 */
+	public int setMark(int courseId, int grade) {
 		for(int i=0; i<this.numberOfCoursesAttended; i++) {
 			if(this.courses[i].getCourseId()==courseId) {
+				int old=this.coursesMarks[i];
+				if(old>0) {
+					this.marksSum-=old;
+					this.marksCount--;
+				}
+				if(grade>0) {
+					this.marksSum+=grade;
+					this.marksCount++;
+				}
 				this.coursesMarks[i]=grade;
+				return old;
 			}
 		}
+		return -1;
+	}
+	
+	/**
+	 * @return {@code true} if the student attends the course
+	 */
+	public boolean attends(Course c) {
+		for(int i=0; i<this.numberOfCoursesAttended; i++) {
+			if(this.courses[i]==c)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the row in the grade store holding the mark for a course, -1 if none
+	 */
+	public int getGradeRow(int courseId) {
+		for(int i=0; i<this.numberOfCoursesAttended; i++) {
+			if(this.courses[i].getCourseId()==courseId)
+				return this.coursesGradeRows[i];
+		}
+		return -1;
+	}
+	
+	public void setGradeRow(int courseId, int row) {
+		for(int i=0; i<this.numberOfCoursesAttended; i++) {
+			if(this.courses[i].getCourseId()==courseId)
+				this.coursesGradeRows[i]=row;
+		}
+	}
+	
+	public String getStudyPlanCache() {
+		return studyPlanCache;
+	}
+	
+	public void setStudyPlanCache(String studyPlan) {
+		this.studyPlanCache = studyPlan;
+	}
+	
+	/**
+	 * Removes a course from the study plan, keeping the order of the others,
+	 * and removes its mark from the running aggregates
+	 * 
+	 * @return the mark of the course, or -1 if the student does not attend the course
+	 */
+	public int dropCourse(int courseId) {
+		for(int i=0; i<this.numberOfCoursesAttended; i++) {
+			if(this.courses[i].getCourseId()==courseId) {
+				int old=this.coursesMarks[i];
+				if(old>0) {
+					this.marksSum-=old;
+					this.marksCount--;
+				}
+				int tail=this.numberOfCoursesAttended-i-1;
+				System.arraycopy(this.courses, i+1, this.courses, i, tail);
+				System.arraycopy(this.coursesMarks, i+1, this.coursesMarks, i, tail);
+				System.arraycopy(this.coursesGradeRows, i+1, this.coursesGradeRows, i, tail);
+				this.courses[--this.numberOfCoursesAttended]=null;
+				this.studyPlanCache=null;
+				return old;
+			}
+		}
+		return -1;
+	}
+	
+	public int getMarksCount() {
+		return marksCount;
+	}
+	
+	public float getAverage() {
+		return (float)marksSum/marksCount;
+	}
+	
+	public float getScore() {
+		return score;
+	}
+	
+	/**
+	 * Recomputes the score as the average mark plus a bonus:
+	 * the number of taken exams divided by the number of attended courses, multiplied by 10
+	 */
+	public void updateScore() {
+		float n=marksCount;
+		this.score = getAverage() + ((n/numberOfCoursesAttended)*10);
 	}
 	public int[] getAllMarks() {
 		return Arrays.copyOf(coursesMarks, numberOfCoursesAttended);
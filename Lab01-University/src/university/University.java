@@ -1,27 +1,58 @@
 package university;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 /**
  * This class represents a university education system.
  * 
  * It manages students and courses.
+ * 
+ * The class is thread safe: operations on a student lock that student,
+ * operations on a course lock that course (always after the student),
+ * so registrations and exams for different students and courses proceed in parallel.
  *
  */
 public class University {
 
-	private final static int MAX_STUDENTS=1000;
-	private final static int FIRST_STUDENT_ID=10000;
-	private final static int MAX_COURSES=50;
-	private final static int FIRST_COURSE_ID=10;
+	private final static int INITIAL_STUDENTS=16;
+	final static int FIRST_STUDENT_ID=10000;
+	private final static int INITIAL_COURSES=8;
+	final static int FIRST_COURSE_ID=10;
 	
 // R1
 	private String universityName;
 	private String rectorName;
 	private String rectorSurname;
-	private Student[] students = new Student[MAX_STUDENTS];
-	private int nStudents;
-	private Course courses[] = new Course[MAX_COURSES];;
-	private int nCourses;
+	// students and courses are indexed by (ID - FIRST_ID), arrays grow on demand.
+	// Writers hold registryLock; readers read the counter before the array
+	private volatile Student[] students = new Student[INITIAL_STUDENTS];
+	private volatile int nStudents;
+	private volatile Course courses[] = new Course[INITIAL_COURSES];
+	private volatile int nCourses;
+	private final Object registryLock = new Object();
+	// students with at least one exam, best score first;
+	// a student is removed before changing its score and added back afterwards
+	private final ConcurrentSkipListSet<Student> ranking = new ConcurrentSkipListSet<>(
+			Comparator.comparingDouble(Student::getScore).reversed()
+					  .thenComparingInt(Student::getStudentID));
+	// columnar copy of all the grades, for analytics
+	private final GradeStore grades = new GradeStore();
+	// rosters and study plans are cached in the courses and students,
+	// invalidated when a registration changes them
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	// change feed, null if not attached
+	private volatile EventLog eventLog;
 	/**
 	 * Constructor
 	 * @param name name of the university
@@ -64,6 +95,14 @@ public class University {
 		return this.rectorName + " " + this.rectorSurname;
 	}
 	
+	String getRectorName() {
+		return rectorName;
+	}
+	
+	String getRectorSurname() {
+		return rectorSurname;
+	}
+	
 // R2
 	/**
 	 * Enrol a student in the university
@@ -74,15 +113,28 @@ public class University {
 	 * @return unique ID of the newly enrolled student
 	 */
 	public int enroll(String first, String last){
-		this.students[nStudents] = new Student();	
-		this.students[nStudents].setName(first);
-		this.students[nStudents].setSurname(last);
-		this.students[nStudents].setStudentID(FIRST_STUDENT_ID+nStudents);
-		this.nStudents++;
+		Student s = addStudent(first, last);
 		
-		logger.info("New student enrolled: " + this.students[nStudents-1].getStudentID() + ", " + this.students[nStudents-1].getName() + " " +this.students[nStudents-1].getSurname());
+		logger.info(() -> "New student enrolled: " + s.getStudentID() + ", " + s.getName() + " " + s.getSurname());
 		
-		return this.students[nStudents-1].getStudentID();
+		return s.getStudentID();
+	}
+	
+	Student addStudent(String first, String last) {
+		synchronized(this.registryLock) {
+			if(this.nStudents==this.students.length)
+				this.students = Arrays.copyOf(this.students, this.nStudents*2);
+			Student s = new Student();
+			s.setName(first);
+			s.setSurname(last);
+			s.setStudentID(FIRST_STUDENT_ID+nStudents);
+			this.students[nStudents] = s;
+			this.nStudents++;
+			EventLog log = this.eventLog;
+			if(log!=null)
+				log.enrolled(s.getStudentID(), first, last);
+			return s;
+		}
 	}
 	
 	/**
@@ -93,14 +145,25 @@ public class University {
 	 * @return information about the student
 	 */
 	public String student(int id){
-		
-		for(int i=0; i<nStudents; ++i) {
-			if(this.students[i].getStudentID()==id) {
-				return this.students[i].getStudentID() + " " + this.students[i].getName() + " " + this.students[i].getSurname(); 
-			}
-		}
-		
-		return "Student Not Found";
+		int i = id-FIRST_STUDENT_ID;
+		if(i<0 || i>=this.nStudents)
+			return "Student Not Found";
+		return studentInfo(this.students[i]);
+	}
+	
+	Student getStudent(int id) {
+		int i = id-FIRST_STUDENT_ID;
+		if(i<0 || i>=this.nStudents)
+			throw new IllegalArgumentException("Student " + id + " not found");
+		return this.students[i];
+	}
+	
+	int getStudentCount() {
+		return nStudents;
+	}
+	
+	private static String studentInfo(Student s) {
+		return s.getStudentID() + " " + s.getName() + " " + s.getSurname();
 	}
 	
 // R3
@@ -113,15 +176,28 @@ public class University {
 	 * @return the unique code assigned to the course
 	 */
 	public int activate(String title, String teacher){
-		this.courses[this.nCourses] = new Course();
-		this.courses[this.nCourses].setCourseName(title);
-		this.courses[this.nCourses].setTeacherName(teacher);
-		this.courses[this.nCourses].setCourseId(10+this.nCourses);
-		this.nCourses++;
+		Course c = addCourse(title, teacher);
 		
-		logger.info("New course activated: " + this.courses[this.nCourses-1].getCourseId() +", " + this.courses[this.nCourses-1].getCourseName() + " " + this.courses[this.nCourses-1].getTeacherName());
+		logger.info(() -> "New course activated: " + c.getCourseId() + ", " + c.getCourseName() + " " + c.getTeacherName());
 		
-		return this.courses[this.nCourses-1].getCourseId();
+		return c.getCourseId();
+	}
+	
+	Course addCourse(String title, String teacher) {
+		Course c = new Course();
+		c.setCourseName(title);
+		c.setTeacherName(teacher);
+		synchronized(this.registryLock) {
+			if(this.nCourses==this.courses.length)
+				this.courses = Arrays.copyOf(this.courses, this.nCourses*2);
+			c.setCourseId(FIRST_COURSE_ID+this.nCourses);
+			this.courses[this.nCourses] = c;
+			this.nCourses++;
+			EventLog log = this.eventLog;
+			if(log!=null)
+				log.activated(c.getCourseId(), title, teacher);
+		}
+		return c;
 	}
 	
 	/**
@@ -136,27 +212,198 @@ public class University {
 	 * @return information about the course
 	 */
 	public String course(int code){
-
-		for(int i=0; i<this.nCourses; i++) {
-			if(this.courses[i].getCourseId()==code)
-				return this.courses[i].getCourseId() + "," + this.courses[i].getCourseName() + "," + this.courses[i].getTeacherName();
- 		}
-
-		return null;
+		int i = code-FIRST_COURSE_ID;
+		if(i<0 || i>=this.nCourses)
+			return null;
+		return courseInfo(this.courses[i]);
+	}
+	
+	Course getCourse(int code) {
+		int i = code-FIRST_COURSE_ID;
+		if(i<0 || i>=this.nCourses)
+			throw new IllegalArgumentException("Course " + code + " not found");
+		return this.courses[i];
+	}
+	
+	int getCourseCount() {
+		return nCourses;
+	}
+	
+	private static String courseInfo(Course c) {
+		return c.getCourseId() + "," + c.getCourseName() + "," + c.getTeacherName();
 	}
 	
 // R4
 	/**
-	 * Register a student to attend a course
+	 * Register a student to attend a course.
+	 * 
+	 * If the course is full, or other students are already waiting for a seat,
+	 * the student is put at the end of the course waitlist
+	 * (see {@link #setCapacity(int, int)}).
+	 * 
 	 * @param studentID id of the student
 	 * @param courseCode id of the course
 	 */
 	public void register(int studentID, int courseCode){
+		if(addRegistration(studentID, courseCode))
+			logger.info(() -> "Student " + studentID + " signed up for course " + courseCode);
+		else
+			logger.info(() -> "Student " + studentID + " added to the waitlist of course " + courseCode);
+	}
+	
+	/**
+	 * @return {@code true} if the student got a seat, {@code false} if waitlisted
+	 */
+	boolean addRegistration(int studentID, int courseCode) {
+		Student s = getStudent(studentID);
+		Course c = getCourse(courseCode);
+		
+		synchronized(s) {
+			synchronized(c) {
+				// already holding a seat
+				if(s.attends(c))
+					return true;
+				// free seats go to the waitlist first
+				Student first = c.firstWaitlisted();
+				boolean admitted = c.hasFreeSeat() && (first==null || first==s);
+				if(admitted) {
+					if(first==s)
+						c.removeFromWaitlist(s);
+					admit(s, c);
+				} else
+					c.addToWaitlist(s);
+				EventLog log = this.eventLog;
+				if(log!=null)
+					log.registered(studentID, courseCode);
+				return admitted;
+			}
+		}
+	}
+	
+	/**
+	 * Registers a student to a course (the caller must hold the locks of both)
+	 */
+	private void admit(Student s, Course c) {
+		boolean ranked = this.ranking.remove(s);
+		s.attendNewCourse(c);
+		c.enrollNewStudent(s);
+		if(ranked)
+			rank(s);
+	}
+	
+	/**
+	 * Withdraws a student from a course, or from its waitlist.
+	 * 
+	 * The mark of the course, if any, is discarded and the freed seat
+	 * is given to the first student in the waitlist.
+	 * 
+	 * @param studentID id of the student
+	 * @param courseCode id of the course
+	 * @return {@code true} if the student was attending or waiting for the course
+	 */
+	public boolean withdraw(int studentID, int courseCode) {
+		boolean done = removeRegistration(studentID, courseCode);
+		if(done)
+			logger.info(() -> "Student " + studentID + " withdrew from course " + courseCode);
+		promote(getCourse(courseCode));
+		return done;
+	}
+	
+	boolean removeRegistration(int studentID, int courseCode) {
+		Student s = getStudent(studentID);
+		Course c = getCourse(courseCode);
 		
-		this.students[studentID-FIRST_STUDENT_ID].attendNewCourse(this.courses[courseCode-FIRST_COURSE_ID]);
-		this.courses[courseCode-FIRST_COURSE_ID].enrollNewStudent(this.students[studentID-FIRST_STUDENT_ID]);
+		synchronized(s) {
+			synchronized(c) {
+				if(!c.removeFromWaitlist(s)) {
+					if(!c.removeStudent(s))
+						return false;
+					this.ranking.remove(s);
+					int row = s.getGradeRow(courseCode);
+					int old = s.dropCourse(courseCode);
+					c.updateMark(old, 0);
+					if(row>=0)
+						this.grades.update(row, 0);
+					rank(s);
+				}
+				EventLog log = this.eventLog;
+				if(log!=null)
+					log.withdrawn(studentID, courseCode);
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Defines the maximum number of attendees of a course.
+	 * 
+	 * Students exceeding the capacity are put in a FIFO waitlist
+	 * and get a seat automatically when one becomes available.
+	 * Lowering the capacity does not remove any attendee.
+	 * 
+	 * @param courseCode id of the course
+	 * @param capacity maximum number of attendees, 0 for no limit
+	 */
+	public void setCapacity(int courseCode, int capacity) {
+		changeCapacity(courseCode, capacity);
+		logger.info(() -> "Capacity of course " + courseCode + " set to " + capacity);
+		promote(getCourse(courseCode));
+	}
+	
+	void changeCapacity(int courseCode, int capacity) {
+		Course c = getCourse(courseCode);
+		synchronized(c) {
+			c.setCapacity(capacity);
+			EventLog log = this.eventLog;
+			if(log!=null)
+				log.capacityChanged(courseCode, capacity);
+		}
+	}
+	
+	/**
+	 * Gives the free seats of a course to the students in its waitlist, in order
+	 */
+	void promote(Course c) {
+		while(true) {
+			Student first;
+			synchronized(c) {
+				first = c.firstWaitlisted();
+				if(first==null || !c.hasFreeSeat())
+					return;
+			}
+			// the student lock must be taken before the course lock
+			boolean admitted;
+			synchronized(first) {
+				synchronized(c) {
+					admitted = c.firstWaitlisted()==first && c.hasFreeSeat();
+					if(admitted) {
+						c.removeFromWaitlist(first);
+						admit(first, c);
+					}
+				}
+			}
+			if(admitted)
+				logger.info(() -> "Student " + first.getStudentID() + " admitted to course " + c.getCourseId() + " from the waitlist");
+		}
+	}
+	
+	/**
+	 * Retrieve the list of students waiting for a seat in a course
+	 * 
+	 * @param courseCode unique id of the course
+	 * @return list of waiting students in order of arrival, separated by "\n"
+	 */
+	public String waitlist(int courseCode) {
+		Course c = getCourse(courseCode);
+		StringBuilder ans = new StringBuilder();
 		
-		logger.info("Student " + studentID + " signed up for course " + courseCode);
+		synchronized(c) {
+			for(Student s : c.getWaitlist()) {
+				ans.append(studentInfo(s));
+				ans.append("\n");
+			}
+		}
+		return ans.toString();
 	}
 	
 	/**
@@ -167,16 +414,25 @@ public class University {
 	 */
 
 	public String listAttendees(int courseCode){
-		StringBuffer ans = new StringBuffer();
+		Course c = getCourse(courseCode);
 		
-		for (Student s : this.courses[courseCode-FIRST_COURSE_ID].getStudents()) {
-			if(s != null) {
-				ans.append(this.student(s.getStudentID()));
+		synchronized(c) {
+			String cached = c.getAttendeesCache();
+			if(cached!=null) {
+				this.cacheHits.increment();
+				return cached;
+			}
+			this.cacheMisses.increment();
+			
+			StringBuilder ans = new StringBuilder();
+			Student[] attendees = c.getStudents();
+			for(int i=0; i<c.getEnrolled(); i++) {
+				ans.append(studentInfo(attendees[i]));
 				ans.append("\n");
 			}
+			c.setAttendeesCache(ans.toString());
+			return c.getAttendeesCache();
 		}
-			
-		return ans.toString();
 	}
 
 	/**
@@ -192,15 +448,45 @@ public class University {
 	 */
 	
 	public String studyPlan(int studentID){
-		StringBuffer ans = new StringBuffer();
+		Student s = getStudent(studentID);
 		
-		for( Course c : this.students[studentID-FIRST_STUDENT_ID].getCourses() ) {
-			if(c!=null) {
-				ans.append(course(c.getCourseId()));
+		synchronized(s) {
+			String cached = s.getStudyPlanCache();
+			if(cached!=null) {
+				this.cacheHits.increment();
+				return cached;
+			}
+			this.cacheMisses.increment();
+			
+			StringBuilder ans = new StringBuilder();
+			Course[] plan = s.getCourses();
+			for(int i=0; i<s.getNumberOfCousesAttended(); i++) {
+				ans.append(courseInfo(plan[i]));
 				ans.append("\n");
 			}
+			s.setStudyPlanCache(ans.toString());
+			return s.getStudyPlanCache();
 		}
-		return ans.toString();
+	}
+	
+	/**
+	 * Number of calls to {@link #listAttendees} and {@link #studyPlan}
+	 * answered with a previously rendered string
+	 * 
+	 * @return number of cache hits
+	 */
+	public long getCacheHits() {
+		return this.cacheHits.sum();
+	}
+	
+	/**
+	 * Number of calls to {@link #listAttendees} and {@link #studyPlan}
+	 * that had to render the string
+	 * 
+	 * @return number of cache misses
+	 */
+	public long getCacheMisses() {
+		return this.cacheMisses.sum();
 	}
 
 // R5
@@ -212,11 +498,35 @@ public class University {
 	 * @param grade		grade ( 0-30)
 	 */
 	public void exam(int studentId, int courseID, int grade) {
-		this.students[studentId-FIRST_STUDENT_ID].setMark(courseID, grade);
+		recordExam(studentId, courseID, grade);
 		
-		logger.info("Student " + studentId + " took an exam in course " + courseID + " with grade " + grade);
+		logger.info(() -> "Student " + studentId + " took an exam in course " + courseID + " with grade " + grade);
 
 	}
+	
+	void recordExam(int studentId, int courseID, int grade) {
+		Student s = getStudent(studentId);
+		Course c = getCourse(courseID);
+		
+		synchronized(s) {
+			synchronized(c) {
+				this.ranking.remove(s);
+				int old = s.setMark(courseID, grade);
+				if(old>=0) {
+					c.updateMark(old, grade);
+					int row = s.getGradeRow(courseID);
+					if(row<0)
+						s.setGradeRow(courseID, this.grades.append(studentId, courseID, grade));
+					else
+						this.grades.update(row, grade);
+				}
+				rank(s);
+				EventLog log = this.eventLog;
+				if(log!=null)
+					log.examined(studentId, courseID, grade);
+			}
+		}
+	}
 
 	/**
 	 * Computes the average grade for a student and formats it as a string
@@ -231,16 +541,12 @@ public class University {
 	 * @return the average grade formatted as a string.
 	 */
 	public String studentAvg(int studentId) {
-		float sum=0, n=0;
-		for( int mark : this.students[studentId-FIRST_STUDENT_ID].getAllMarks() ) {
-			if(mark > 0) {
-				sum+=mark;
-				n++;
-			}
-		}
+		Student s = getStudent(studentId);
 		
-		if(n>0)
-			return "Student " + studentId + " : " + sum/n;
+		synchronized(s) {
+			if(s.getMarksCount()>0)
+				return "Student " + studentId + " : " + s.getAverage();
+		}
 		
 		return "Student " + studentId + " hasn't taken any exams";
 	}
@@ -257,18 +563,13 @@ public class University {
 	 * @return the course average formatted as a string
 	 */
 	public String courseAvg(int courseId) {
-		float n=0, sum=0;
+		Course c = getCourse(courseId);
 		
-		for(Student s : this.courses[courseId-FIRST_COURSE_ID].getStudents()) {
-			if(s!=null && s.getMark(courseId)!=0) {
-				sum+=s.getMark(courseId);
-				n++;
-			}
+		synchronized(c) {
+			if(c.getMarksCount()>0)
+				return "The average for the course " + c.getCourseName() + " is: " + c.getAverage();
 		}
-			
-		if(n>0)
-			return "The average for the course " + this.courses[courseId-FIRST_COURSE_ID].getCourseName() + " is: " + sum/n;
-		return "No student has taken the exam in " + this.courses[courseId-FIRST_COURSE_ID].getCourseName();
+		return "No student has taken the exam in " + c.getCourseName();
 	}
 	
 
@@ -289,70 +590,256 @@ public class University {
 	 * @return info on the best three students.
 	 */
 	public String topThreeStudents() {
+		return topStudents(3);
+	}
+	
+	/**
+	 * Retrieve information for the {@code k} best students.
+	 * 
+	 * The score and the format are the same described in {@link #topThreeStudents()}.
+	 * Only the students that have taken at least one exam are ranked;
+	 * a student whose score is being updated concurrently may be momentarily missing.
+	 * 
+	 * @param k number of students to report
+	 * @return info on the best {@code k} students.
+	 */
+	public String topStudents(int k) {
+		StringBuilder ans = new StringBuilder();
+		Iterator<Student> it = this.ranking.iterator();
 		
-		float sum=0, n=0, avg=0, avg1=0, avg2=0, avg3=0, avgTmp=0;
-		Student id1=null, id2=null, id3=null, idTmp=null, currentId=null;
-
-		for(Student s : this.students) {
-			avg=0;
-			sum=0;
-			n=0;
-			if(s!=null) {
-				for(int mark : s.getAllMarks()) {
-					if(mark>0) {
-						sum+=mark;
-						n++;
-					}
-				}
-				
-				avg=sum/n+((n/s.getNumberOfCousesAttended())*10);		
-				currentId=s;
-			
-				if(avg>avg1) {
-					idTmp=id1;
-					avgTmp=avg1;
-					
-					id1=currentId;
-					avg1=avg;
-					
-					currentId=idTmp;
-					avg=avgTmp;
-				}
-				if(avg>avg2) {
-					idTmp=id2;
-					avgTmp=avg2;
-					
-					id2=currentId;
-					avg2=avg;
-					
-					currentId=idTmp;
-					avg=avgTmp;
-				}
-				if(avg>avg3) {
-					idTmp=id3;
-					avgTmp=avg3;
-					
-					id3=currentId;
-					avg3=avg;
-					
-					currentId=idTmp;
-					avg=avgTmp;
-				}
+		for(int i=0; i<k && it.hasNext(); i++) {
+			Student s = it.next();
+			if(i>0)
+				ans.append("\n");
+			ans.append(s.getName()).append(" ").append(s.getSurname()).append(": ").append(s.getScore());
+		}
+		return ans.toString();
+	}
+	
+	/**
+	 * Retrieves the columnar store of the grades, which offers
+	 * analytics such as histograms, percentiles and pass rates.
+	 * 
+	 * @return the grade store
+	 */
+	public GradeStore getGradeStore() {
+		return this.grades;
+	}
+	
+	/**
+	 * Computes the award score (see {@link #topThreeStudents()}) of every student
+	 * with a single pass over the grade store.
+	 * 
+	 * @return the scores indexed by (ID - 10000), {@code NaN} for students without exams
+	 */
+	public float[] awardScores() {
+		int n = this.nStudents;
+		Student[] all = this.students;
+		int[] attended = new int[n];
+		for(int i=0; i<n; i++) {
+			synchronized(all[i]) {
+				attended[i] = all[i].getNumberOfCousesAttended();
 			}
 		}
-		
-		if(id3!=null)
-			return id1.getName()+" "+id1.getSurname()+": "+avg1+"\n"+id2.getName()+" "+id2.getSurname()+": "+avg2+"\n"+id3.getName()+" "+id3.getSurname()+": "+avg3;
-		else if(id2!=null)
-			return id1.getName()+" "+id1.getSurname()+": "+avg1+"\n"+id2.getName()+" "+id2.getSurname()+": "+avg2;
-		else
-			return id1.getName()+" "+id1.getSurname()+": "+avg1;
+		return this.grades.scores(FIRST_STUDENT_ID, attended);
+	}
+	
+	/**
+	 * Recomputes the score of a student and puts it back in the ranking
+	 * (the student must have been removed from the ranking before any change,
+	 * the caller must hold the lock on the student)
+	 */
+	void rank(Student s) {
+		s.updateScore();
+		if(s.getMarksCount()>0)
+			this.ranking.add(s);
+	}
+
+// Bulk import
+	/**
+	 * Pre-sizes the student and course registries, to be used
+	 * before importing large amounts of data
+	 * 
+	 * @param students expected total number of students
+	 * @param courses expected total number of courses
+	 */
+	public void ensureCapacity(int students, int courses) {
+		synchronized(this.registryLock) {
+			if(students>this.students.length)
+				this.students = Arrays.copyOf(this.students, students);
+			if(courses>this.courses.length)
+				this.courses = Arrays.copyOf(this.courses, courses);
 		}
+	}
+	
+	/**
+	 * Enrolls the students read from a CSV source, one per line,
+	 * formatted as {@code "FIRST_NAME,LAST_NAME"}.
+	 * 
+	 * All the rows are read and checked before enrolling any student, so that
+	 * a malformed row imports nothing; the registry is pre-sized for the rows.
+	 * Rows are not logged individually, a single summary is logged at the end.
+	 * 
+	 * @param in source of the rows
+	 * @return number of enrolled students
+	 * @throws IOException in case of read errors or malformed rows, naming the line
+	 */
+	public int importStudents(Reader in) throws IOException {
+		BufferedReader r = new BufferedReader(in);
+		List<String[]> rows = new ArrayList<>();
+		String line;
+		for(int lineNo=1; (line=r.readLine())!=null; lineNo++) {
+			if(line.isEmpty())
+				continue;
+			String[] fields = fields(line, 2, lineNo);
+			fields[0] = fields[0].trim();
+			fields[1] = fields[1].trim();
+			rows.add(fields);
+		}
+		ensureCapacity(getStudentCount()+rows.size(), 0);
+		for(String[] row : rows)
+			addStudent(row[0], row[1]);
+		final int n=rows.size();
+		logger.info(() -> "Imported " + n + " students");
+		return n;
+	}
+	
+	/**
+	 * Registers the students to the courses read from a CSV source, one per line,
+	 * formatted as {@code "STUDENT_ID,COURSE_CODE"}.
+	 * 
+	 * All the rows are read and checked before registering any student, so that
+	 * a malformed row, or one referring to a missing student or course, imports nothing.
+	 * Rows are not logged individually, a single summary is logged at the end.
+	 * 
+	 * @param in source of the rows
+	 * @return number of registrations
+	 * @throws IOException in case of read errors or invalid rows, naming the line
+	 */
+	public int importRegistrations(Reader in) throws IOException {
+		BufferedReader r = new BufferedReader(in);
+		List<int[]> rows = new ArrayList<>();
+		String line;
+		for(int lineNo=1; (line=r.readLine())!=null; lineNo++) {
+			if(line.isEmpty())
+				continue;
+			String[] fields = fields(line, 2, lineNo);
+			rows.add(new int[] { studentField(fields[0], lineNo), courseField(fields[1], lineNo) });
+		}
+		for(int[] row : rows)
+			addRegistration(row[0], row[1]);
+		final int n=rows.size();
+		logger.info(() -> "Imported " + n + " registrations");
+		return n;
+	}
+	
+	/**
+	 * Records the exam grades read from a CSV source, one per line,
+	 * formatted as {@code "STUDENT_ID,COURSE_CODE,GRADE"}.
+	 * 
+	 * All the rows are read and checked before recording any grade, so that
+	 * a malformed row, or one referring to a missing student or course, imports nothing.
+	 * Rows are not logged individually, a single summary is logged at the end.
+	 * 
+	 * @param in source of the rows
+	 * @return number of recorded grades
+	 * @throws IOException in case of read errors or invalid rows, naming the line
+	 */
+	public int importGrades(Reader in) throws IOException {
+		BufferedReader r = new BufferedReader(in);
+		List<int[]> rows = new ArrayList<>();
+		String line;
+		for(int lineNo=1; (line=r.readLine())!=null; lineNo++) {
+			if(line.isEmpty())
+				continue;
+			String[] fields = fields(line, 3, lineNo);
+			rows.add(new int[] { studentField(fields[0], lineNo), courseField(fields[1], lineNo),
+					intField(fields[2], lineNo) });
+		}
+		for(int[] row : rows)
+			recordExam(row[0], row[1], row[2]);
+		final int n=rows.size();
+		logger.info(() -> "Imported " + n + " grades");
+		return n;
+	}
+	
+	private static String[] fields(String line, int expected, int lineNo) throws IOException {
+		String[] fields = line.split(",", -1);
+		if(fields.length!=expected)
+			throw new IOException("Line " + lineNo + ": expected " + expected + " fields but found " + fields.length);
+		return fields;
+	}
+	
+	private static int intField(String field, int lineNo) throws IOException {
+		try {
+			return Integer.parseInt(field.trim());
+		} catch(NumberFormatException e) {
+			throw new IOException("Line " + lineNo + ": invalid number '" + field.trim() + "'", e);
+		}
+	}
+	
+	private int studentField(String field, int lineNo) throws IOException {
+		int id = intField(field, lineNo);
+		if(id-FIRST_STUDENT_ID<0 || id-FIRST_STUDENT_ID>=this.nStudents)
+			throw new IOException("Line " + lineNo + ": student " + id + " not found");
+		return id;
+	}
+	
+	private int courseField(String field, int lineNo) throws IOException {
+		int code = intField(field, lineNo);
+		if(code-FIRST_COURSE_ID<0 || code-FIRST_COURSE_ID>=this.nCourses)
+			throw new IOException("Line " + lineNo + ": course " + code + " not found");
+		return code;
+	}
+
+// Snapshots
+	/**
+	 * Writes a binary snapshot of the university (students, courses,
+	 * registrations and marks) to a file.
+	 * 
+	 * The snapshot is consistent only if no other thread is modifying the university.
+	 * 
+	 * @param file destination file, overwritten if it exists
+	 * @throws IOException in case of write errors
+	 */
+	public void saveSnapshot(Path file) throws IOException {
+		Snapshot.write(this, file);
+	}
+	
+	/**
+	 * Rebuilds a university from a snapshot written by {@link #saveSnapshot(Path)}.
+	 * 
+	 * Operations are not logged while loading.
+	 * 
+	 * @param file snapshot file
+	 * @return the restored university
+	 * @throws IOException in case of read errors or invalid file
+	 */
+	public static University loadSnapshot(Path file) throws IOException {
+		return Snapshot.read(file);
+	}
+
+// Change feed
+	/**
+	 * Attaches an event log that will receive every subsequent
+	 * enrollment, activation, registration and exam.
+	 * 
+	 * Events are appended while holding the locks of the affected
+	 * entities, so the log order matches the order the changes were applied.
+	 * 
+	 * @param log the event log, or {@code null} to detach it
+	 */
+	public void setEventLog(EventLog log) {
+		this.eventLog = log;
+	}
 
 // R7
     /**
      * This field points to the logger for the class that can be used
      * throughout the methods to log the activities.
+     * 
+     * Messages are built only if the level is enabled; to keep the
+     * I/O off the calling thread install an {@link AsyncAuditHandler}.
      */
     private final static Logger logger = Logger.getLogger("University");
 
@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Standalone contention benchmark for {@link University#register(int, int)}
+ * on a course with limited capacity.
+ *
+ * All the threads race for the seats of the same course at registration open,
+ * then every attendee withdraws so that the whole waitlist is promoted;
+ * the number of threads doubles up to the number of available cores.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.AdmissionBenchmark}
+ */
+public class AdmissionBenchmark {
+
+	// strong reference, otherwise the configured logger could be collected
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int SEATS = 1_000;
+	private static final int STUDENTS_PER_THREAD = 50_000;
+
+	public static void main(String[] args) throws Exception {
+		LOGGER.setLevel(Level.OFF);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for(int round=0; round<2; ++round) {
+			for(int threads=1; threads<=cores; threads*=2) {
+				University u = new University("Admission");
+				int code = u.activate("Object Oriented Programming", "James Gosling");
+				u.setCapacity(code, SEATS);
+				int students = threads*STUDENTS_PER_THREAD;
+				u.ensureCapacity(students, 1);
+				for(int i=0; i<students; ++i)
+					u.enroll("Name" + i, "Surname" + i);
+
+				long elapsed = run(u, code, threads);
+				boolean drained = u.listAttendees(code).isEmpty() && u.waitlist(code).isEmpty();
+				System.out.printf("threads=%2d %,14.0f ops/s (drained=%b)%n",
+						threads, 2.0*students*1e9/elapsed, drained);
+			}
+		}
+	}
+
+	private static long run(University u, int code, int threads) throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+		Thread[] workers = new Thread[threads];
+		for(int t=0; t<threads; ++t) {
+			final int first = 10000 + t;
+			final int step = threads;
+			workers[t] = new Thread(() -> {
+				try {
+					barrier.await();
+					for(int i=0; i<STUDENTS_PER_THREAD; ++i)
+						u.register(first + i*step, code);
+					for(int i=0; i<STUDENTS_PER_THREAD; ++i)
+						u.withdraw(first + i*step, code);
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			workers[t].start();
+		}
+		barrier.await();
+		long start = System.nanoTime();
+		for(Thread w : workers)
+			w.join();
+		return System.nanoTime() - start;
+	}
+}
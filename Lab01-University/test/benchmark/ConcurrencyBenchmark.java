@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Standalone throughput benchmark for concurrent {@link University#register(int, int)}
+ * and {@link University#exam(int, int, int)} calls.
+ *
+ * Each thread works on its own students, spread over all the courses;
+ * the number of threads doubles up to the number of available cores.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.ConcurrencyBenchmark}
+ */
+public class ConcurrencyBenchmark {
+
+	// strong reference, otherwise the configured logger could be collected
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int COURSES = 500;
+	private static final int STUDENTS_PER_THREAD = 100_000;
+	private static final int COURSES_PER_STUDENT = 5;
+
+	public static void main(String[] args) throws Exception {
+		LOGGER.setLevel(Level.OFF);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for(int round=0; round<2; ++round) {
+			for(int threads=1; threads<=cores; threads*=2) {
+				University u = new University("Concurrent");
+				for(int c=0; c<COURSES; ++c)
+					u.activate("Course" + c, "Teacher" + c);
+				int students = threads*STUDENTS_PER_THREAD;
+				u.ensureCapacity(students, COURSES);
+				for(int i=0; i<students; ++i)
+					u.enroll("Name" + i, "Surname" + i);
+
+				long elapsed = run(u, threads);
+				long ops = 2L * students * COURSES_PER_STUDENT;
+				System.out.printf("threads=%2d %,14.0f ops/s%n", threads, ops*1e9/elapsed);
+			}
+		}
+	}
+
+	private static long run(University u, int threads) throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+		Thread[] workers = new Thread[threads];
+		for(int t=0; t<threads; ++t) {
+			final int first = 10000 + t*STUDENTS_PER_THREAD;
+			workers[t] = new Thread(() -> {
+				try {
+					barrier.await();
+					for(int i=0; i<STUDENTS_PER_THREAD; ++i)
+						for(int j=0; j<COURSES_PER_STUDENT; ++j)
+							u.register(first+i, 10 + (i+j*101)%COURSES);
+					for(int i=0; i<STUDENTS_PER_THREAD; ++i)
+						for(int j=0; j<COURSES_PER_STUDENT; ++j)
+							u.exam(first+i, 10 + (i+j*101)%COURSES, 18 + (i+j)%13);
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			workers[t].start();
+		}
+		barrier.await();
+		long start = System.nanoTime();
+		for(Thread w : workers)
+			w.join();
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.Course;
+import university.GradeStore;
+import university.Student;
+import university.University;
+
+/**
+ * Standalone benchmark comparing the analytics over the columnar {@link GradeStore}
+ * with the same computations walking a Student/Course object graph
+ * holding the same data.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.GradeBenchmark [students]}
+ */
+public class GradeBenchmark {
+
+	// strong reference, otherwise the configured logger could be collected
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int COURSES = 200;
+	private static final int COURSES_PER_STUDENT = 5;
+	private static final int ITERATIONS = 20;
+
+	public static void main(String[] args) {
+		LOGGER.setLevel(Level.OFF);
+		int nStudents = args.length>0 ? Integer.parseInt(args[0]) : 200_000;
+
+		University u = new University("Grades");
+		u.ensureCapacity(nStudents, COURSES);
+		Course[] courses = new Course[COURSES];
+		Student[] students = new Student[nStudents];
+		for(int c=0; c<COURSES; ++c) {
+			courses[c] = new Course();
+			courses[c].setCourseId(u.activate("Course" + c, "Teacher" + c));
+		}
+		for(int i=0; i<nStudents; ++i) {
+			int id = u.enroll("Name" + i, "Surname" + i);
+			students[i] = new Student();
+			students[i].setStudentID(id);
+			for(int j=0; j<COURSES_PER_STUDENT; ++j) {
+				Course c = courses[(i+j*37)%COURSES];
+				u.register(id, c.getCourseId());
+				students[i].attendNewCourse(c);
+				c.enrollNewStudent(students[i]);
+			}
+			for(int j=0; j<COURSES_PER_STUDENT-1; ++j) {
+				Course c = courses[(i+j*37)%COURSES];
+				int grade = 18 + (i+j)%13;
+				u.exam(id, c.getCourseId(), grade);
+				students[i].setMark(c.getCourseId(), grade);
+			}
+		}
+
+		double sink = 0;
+		for(int round=0; round<3; ++round) {
+			long t0 = System.nanoTime();
+			for(int k=0; k<ITERATIONS; ++k)
+				sink += courseAverages(courses)[0];
+			long t1 = System.nanoTime();
+			for(int k=0; k<ITERATIONS; ++k)
+				sink += u.getGradeStore().courseAverages(10, COURSES)[0];
+			long t2 = System.nanoTime();
+			for(int k=0; k<ITERATIONS; ++k)
+				sink += scores(students)[0];
+			long t3 = System.nanoTime();
+			for(int k=0; k<ITERATIONS; ++k)
+				sink += u.awardScores()[0];
+			long t4 = System.nanoTime();
+
+			System.out.printf("round %d%n", round);
+			System.out.printf("  course averages  object graph: %8.2f ms   columnar: %8.2f ms%n",
+					(t1-t0)/1e6/ITERATIONS, (t2-t1)/1e6/ITERATIONS);
+			System.out.printf("  award scores     object graph: %8.2f ms   columnar: %8.2f ms%n",
+					(t3-t2)/1e6/ITERATIONS, (t4-t3)/1e6/ITERATIONS);
+		}
+		System.out.println("(" + sink + ")");
+	}
+
+	/**
+	 * Course averages computed as {@code courseAvg()} used to
+	 */
+	private static double[] courseAverages(Course[] courses) {
+		double[] avg = new double[courses.length];
+		for(int k=0; k<courses.length; ++k) {
+			Course c = courses[k];
+			float n=0, sum=0;
+			for(Student s : c.getStudents()) {
+				if(s!=null && s.getMark(c.getCourseId())>0) {
+					sum+=s.getMark(c.getCourseId());
+					n++;
+				}
+			}
+			avg[k] = sum/n;
+		}
+		return avg;
+	}
+
+	/**
+	 * Award scores computed as {@code topThreeStudents()} used to
+	 */
+	private static float[] scores(Student[] students) {
+		float[] scores = new float[students.length];
+		for(int k=0; k<students.length; ++k) {
+			Student s = students[k];
+			float sum=0, n=0;
+			for(int mark : s.getAllMarks()) {
+				if(mark>0) {
+					sum+=mark;
+					n++;
+				}
+			}
+			scores[k] = sum/n + ((n/s.getNumberOfCousesAttended())*10);
+		}
+		return scores;
+	}
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Standalone benchmark for the bulk import methods of {@link University}.
+ *
+ * Synthetic CSV data are generated in memory, then imported both through the
+ * bulk methods and through the single-row methods; the throughput is
+ * reported in rows per second. The logger is enabled but has no handlers,
+ * so the single-row methods pay for the log records but not for the I/O.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.ImportBenchmark [students]}
+ */
+public class ImportBenchmark {
+
+	// strong reference, otherwise the configured logger could be collected
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int COURSES = 1_000;
+	private static final int COURSES_PER_STUDENT = 5;
+
+	public static void main(String[] args) throws IOException {
+		LOGGER.setUseParentHandlers(false);
+		LOGGER.setLevel(Level.INFO);
+		int students = args.length>0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+		StringBuilder enrollments = new StringBuilder();
+		StringBuilder registrations = new StringBuilder();
+		StringBuilder grades = new StringBuilder();
+		for(int i=0; i<students; ++i) {
+			enrollments.append("Name").append(i).append(",Surname").append(i).append('\n');
+			for(int j=0; j<COURSES_PER_STUDENT; ++j) {
+				int course = 10 + (i+j*97)%COURSES;
+				registrations.append(10000+i).append(',').append(course).append('\n');
+				grades.append(10000+i).append(',').append(course).append(',').append(18+(i+j)%13).append('\n');
+			}
+		}
+		int rows = students*COURSES_PER_STUDENT;
+
+		for(int round=0; round<3; ++round) {
+			University u = new University("Bulk");
+			long t0 = System.nanoTime();
+			// the student registry is pre-sized by the import
+			u.ensureCapacity(0, COURSES);
+			for(int c=0; c<COURSES; ++c)
+				u.activate("Course" + c, "Teacher" + c);
+			u.importStudents(new StringReader(enrollments.toString()));
+			long t1 = System.nanoTime();
+			u.importRegistrations(new StringReader(registrations.toString()));
+			long t2 = System.nanoTime();
+			u.importGrades(new StringReader(grades.toString()));
+			long t3 = System.nanoTime();
+
+			University v = new University("Single");
+			long s0 = System.nanoTime();
+			for(int c=0; c<COURSES; ++c)
+				v.activate("Course" + c, "Teacher" + c);
+			for(int i=0; i<students; ++i)
+				v.enroll("Name" + i, "Surname" + i);
+			long s1 = System.nanoTime();
+			for(int i=0; i<students; ++i)
+				for(int j=0; j<COURSES_PER_STUDENT; ++j)
+					v.register(10000+i, 10 + (i+j*97)%COURSES);
+			long s2 = System.nanoTime();
+			for(int i=0; i<students; ++i)
+				for(int j=0; j<COURSES_PER_STUDENT; ++j)
+					v.exam(10000+i, 10 + (i+j*97)%COURSES, 18+(i+j)%13);
+			long s3 = System.nanoTime();
+
+			System.out.printf("round %d%n", round);
+			report("students", students, t1-t0, s1-s0);
+			report("registrations", rows, t2-t1, s2-s1);
+			report("grades", rows, t3-t2, s3-s2);
+		}
+	}
+
+	private static void report(String what, int rows, long bulkNanos, long singleNanos) {
+		System.out.printf("  %-14s bulk: %,12.0f rows/s   single: %,12.0f rows/s%n",
+				what, rows*1e9/bulkNanos, rows*1e9/singleNanos);
+	}
+}
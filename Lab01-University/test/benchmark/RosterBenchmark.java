@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Standalone benchmark for {@link University#listAttendees(int)}.
+ *
+ * The roster size is kept fixed while the total number of enrolled
+ * students grows: the time per call is expected to stay flat.
+ * Repeated calls return the cached roster, so the cold path is measured
+ * too, withdrawing and registering again a student before every call
+ * to rebuild the roster; the cost of the re-registration alone is
+ * measured separately and subtracted.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.RosterBenchmark}
+ */
+public class RosterBenchmark {
+
+	// strong reference, otherwise the logger could be collected and lose its level
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int ATTENDEES = 100;
+	private static final int WARMUP = 20_000;
+	private static final int ITERATIONS = 100_000;
+	private static final int COLD_ITERATIONS = 20_000;
+
+	public static void main(String[] args) {
+		LOGGER.setLevel(Level.OFF);
+
+		for(int students : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+			University u = populate(students);
+			int code = 10;
+			// registered last, withdrawn and registered again to invalidate the roster
+			int churn = 10000 + students - 1;
+			u.register(churn, code);
+
+			long sink = 0;
+			for(int i=0; i<WARMUP; ++i) {
+				sink += u.listAttendees(code).length();
+				u.withdraw(churn, code);
+				u.register(churn, code);
+			}
+
+			long start = System.nanoTime();
+			for(int i=0; i<ITERATIONS; ++i)
+				sink += u.listAttendees(code).length();
+			long cached = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int i=0; i<COLD_ITERATIONS; ++i) {
+				u.withdraw(churn, code);
+				u.register(churn, code);
+			}
+			long churnOnly = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int i=0; i<COLD_ITERATIONS; ++i) {
+				u.withdraw(churn, code);
+				u.register(churn, code);
+				sink += u.listAttendees(code).length();
+			}
+			long cold = System.nanoTime() - start - churnOnly;
+
+			System.out.printf("students=%,10d attendees=%d listAttendees: cached %8.1f ns/op  cold %8.1f ns/op (%d)%n",
+					students, ATTENDEES+1, (double)cached/ITERATIONS, (double)cold/COLD_ITERATIONS, sink);
+		}
+	}
+
+	private static University populate(int students) {
+		University u = new University("Benchmark");
+		int code = u.activate("Object Oriented Programming", "James Gosling");
+		for(int i=0; i<students; ++i)
+			u.enroll("Name" + i, "Surname" + i);
+		// spread the attendees across the whole ID range
+		int step = students / ATTENDEES;
+		for(int i=0; i<ATTENDEES; ++i)
+			u.register(10000 + i*step, code);
+		return u;
+	}
+}
@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Standalone benchmark comparing a warm restart from a snapshot
+ * with the replay of all the operations through the public methods.
+ *
+ * The logger is enabled but has no handlers, so the replay pays for the
+ * log records but not for the I/O.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.SnapshotBenchmark [students]}
+ */
+public class SnapshotBenchmark {
+
+	// strong reference, otherwise the configured logger could be collected
+	private static final Logger LOGGER = Logger.getLogger("University");
+
+	private static final int COURSES = 1_000;
+	private static final int COURSES_PER_STUDENT = 5;
+
+	public static void main(String[] args) throws IOException {
+		LOGGER.setUseParentHandlers(false);
+		LOGGER.setLevel(Level.INFO);
+		int students = args.length>0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			for(int round=0; round<3; ++round) {
+				long t0 = System.nanoTime();
+				University u = replay(students);
+				long t1 = System.nanoTime();
+				u.saveSnapshot(file);
+				long t2 = System.nanoTime();
+				University restored = University.loadSnapshot(file);
+				long t3 = System.nanoTime();
+
+				System.out.printf("round %d: students=%,d replay %,8.0f ms  save %,8.0f ms  load %,8.0f ms  (%,d bytes, %s)%n",
+						round, students, (t1-t0)/1e6, (t2-t1)/1e6, (t3-t2)/1e6,
+						Files.size(file), restored.student(10000 + students - 1));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static University replay(int students) {
+		University u = new University("Replay");
+		for(int c=0; c<COURSES; ++c)
+			u.activate("Course" + c, "Teacher" + c);
+		for(int i=0; i<students; ++i) {
+			int s = u.enroll("Name" + i, "Surname" + i);
+			for(int j=0; j<COURSES_PER_STUDENT; ++j)
+				u.register(s, 10 + (i+j*97)%COURSES);
+			for(int j=0; j<COURSES_PER_STUDENT; ++j)
+				u.exam(s, 10 + (i+j*97)%COURSES, 18 + (i+j)%13);
+		}
+		return u;
+	}
+}
@@ -0,0 +1,148 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.EventLog;
+import university.University;
+
+public class TestR10_EventLog {
+
+	static final String universityName = "Politecnico di Torino";
+	private static final Logger ul = Logger.getLogger("University");
+	private University poli;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		file = Files.createTempFile("university", ".events");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private void populate() {
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.exam(10000, 10, 27);
+		poli.exam(10001, 11, 30);
+	}
+
+	@Test
+	public void testCursor() throws IOException {
+		try(EventLog log = new EventLog(file, 4)) {
+			poli.setEventLog(log);
+			populate();
+			assertEquals("Wrong last sequence", 9, log.getLastSequence());
+
+			// full batches are written in the background
+			EventLog.Cursor c = log.cursor();
+			long deadline = System.currentTimeMillis() + 10_000;
+			int n=0;
+			while(n<8 && System.currentTimeMillis()<deadline) {
+				if(c.next()!=null)
+					n++;
+				else
+					Thread.yield();
+			}
+			assertEquals("Full batches should be written", 8, n);
+			assertNull("Unexpected write failure", log.getFailure());
+
+			log.sync();
+			EventLog.Event e = c.next();
+			assertNotNull("Missing event after sync", e);
+			assertEquals(9, e.getSequence());
+			assertEquals(EventLog.EXAM, e.getType());
+			assertEquals(10001, e.getStudentId());
+			assertEquals(11, e.getCourseCode());
+			assertEquals(30, e.getGrade());
+			assertNull(c.next());
+
+			EventLog.Cursor resumed = log.cursor(0);
+			e = resumed.next();
+			assertEquals(EventLog.ENROLL, e.getType());
+			assertEquals("Rossi", e.getSecond());
+		}
+	}
+
+	@Test
+	public void testReopenAndReplay() throws IOException {
+		try(EventLog log = new EventLog(file, 100)) {
+			poli.setEventLog(log);
+			populate();
+		}
+
+		try(EventLog log = new EventLog(file, 100)) {
+			assertEquals("Sequence not recovered", 9, log.getLastSequence());
+
+			University replayed = new University(universityName);
+			log.replay(replayed);
+
+			assertEquals(poli.listAttendees(10), replayed.listAttendees(10));
+			assertEquals(poli.studyPlan(10001), replayed.studyPlan(10001));
+			assertEquals(poli.studentAvg(10001), replayed.studentAvg(10001));
+			assertEquals(poli.courseAvg(10), replayed.courseAvg(10));
+			assertEquals(poli.topStudents(2), replayed.topStudents(2));
+		}
+	}
+
+	@Test
+	public void testTailWithoutSync() throws IOException {
+		try(EventLog log = new EventLog(file, 100, 10)) {
+			poli.setEventLog(log);
+			poli.enroll("Mario","Rossi");
+			poli.enroll(null, null);
+
+			// fewer events than a batch are written after the delay
+			EventLog.Cursor c = log.cursor();
+			long deadline = System.currentTimeMillis() + 10_000;
+			int n=0;
+			while(n<2 && System.currentTimeMillis()<deadline) {
+				EventLog.Event e = c.next();
+				if(e!=null) {
+					if(++n==2)
+						assertNull("Null name not preserved", e.getFirst());
+				} else
+					Thread.yield();
+			}
+			assertEquals("Pending events should be written after the delay", 2, n);
+		}
+	}
+
+	@Test
+	public void testTruncatedTail() throws IOException {
+		try(EventLog log = new EventLog(file, 1)) {
+			poli.setEventLog(log);
+			populate();
+		}
+		long size = Files.size(file);
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ch.truncate(size - 3); // torn last record
+		}
+
+		try(EventLog log = new EventLog(file, 1)) {
+			assertEquals("Incomplete event should be discarded", 8, log.getLastSequence());
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.EventLog;
+import university.University;
+
+public class TestR11_Capacity {
+
+	static final String universityName = "Politecnico di Torino";
+	private static final Logger ul = Logger.getLogger("University");
+	private University poli;
+
+	@Before
+	public void setUp() {
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.setRector("Guido", "Saracco");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.enroll("Laura", "Bianchi");
+		poli.enroll("Giuseppe", "Neri");
+	}
+
+	@Test
+	public void testWaitlist() {
+		poli.setCapacity(10, 2);
+		for(int i=0; i<4; ++i)
+			poli.register(10000 + i, 10);
+
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10001 Francesca Verdi\n", poli.listAttendees(10));
+		assertEquals("Wrong waitlist", "10002 Laura Bianchi\n10003 Giuseppe Neri\n", poli.waitlist(10));
+		assertEquals("Waitlisted students should not have the course in their plan", "", poli.studyPlan(10002));
+		assertEquals("No limit expected", "", poli.waitlist(11));
+	}
+
+	@Test
+	public void testWithdrawPromotes() {
+		poli.setCapacity(10, 2);
+		for(int i=0; i<4; ++i)
+			poli.register(10000 + i, 10);
+		poli.exam(10000, 10, 30);
+
+		assertTrue(poli.withdraw(10000, 10));
+		assertEquals("Wrong attendees", "10001 Francesca Verdi\n10002 Laura Bianchi\n", poli.listAttendees(10));
+		assertEquals("Wrong waitlist", "10003 Giuseppe Neri\n", poli.waitlist(10));
+		assertEquals("Wrong study plan", "", poli.studyPlan(10000));
+		assertEquals("Mark of a dropped course should be discarded", "No student has taken the exam in Macro Economics", poli.courseAvg(10));
+
+		assertTrue("Waitlisted student should withdraw", poli.withdraw(10003, 10));
+		assertEquals("", poli.waitlist(10));
+		assertFalse("Not registered", poli.withdraw(10003, 10));
+	}
+
+	@Test
+	public void testRegisterAgainWhenFull() {
+		poli.setCapacity(10, 2);
+		for(int i=0; i<3; ++i)
+			poli.register(10000 + i, 10);
+		poli.register(10000, 10);
+
+		assertEquals("A seated student should not be waitlisted", "10002 Laura Bianchi\n", poli.waitlist(10));
+		assertTrue(poli.withdraw(10001, 10));
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10002 Laura Bianchi\n", poli.listAttendees(10));
+		assertEquals("Course listed twice in the study plan", "10,Macro Economics,Paul Krugman\n", poli.studyPlan(10000));
+	}
+
+	@Test
+	public void testCapacityIncreasePromotesInOrder() {
+		poli.setCapacity(10, 1);
+		for(int i=0; i<4; ++i)
+			poli.register(10000 + i, 10);
+
+		// a new registration cannot overtake the waitlist
+		poli.setCapacity(10, 3);
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10001 Francesca Verdi\n10002 Laura Bianchi\n", poli.listAttendees(10));
+		assertEquals("Wrong waitlist", "10003 Giuseppe Neri\n", poli.waitlist(10));
+
+		poli.setCapacity(10, 0);
+		assertEquals("Wrong waitlist", "", poli.waitlist(10));
+		assertEquals("Wrong study plan", "10,Macro Economics,Paul Krugman\n", poli.studyPlan(10003));
+	}
+
+	@Test
+	public void testConcurrentAdmission() throws Exception {
+		final int nThreads = 8;
+		final int nStudents = 2000;
+		final int seats = 100;
+
+		for(int i=4; i<nStudents; ++i)
+			poli.enroll("Name" + i, "Surname" + i);
+		poli.setCapacity(11, seats);
+
+		CyclicBarrier start = new CyclicBarrier(nThreads);
+		List<Thread> threads = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
+		for(int t=0; t<nThreads; ++t) {
+			final int id = t;
+			Thread th = new Thread(() -> {
+				try {
+					start.await();
+					for(int i=id; i<nStudents; i+=nThreads)
+						poli.register(10000 + i, 11);
+					// every thread gives back a few seats
+					for(int i=id; i<nStudents; i+=nThreads*50)
+						poli.withdraw(10000 + i, 11);
+				} catch(Throwable e) {
+					synchronized(failures) {
+						failures.add(e);
+					}
+				}
+			});
+			threads.add(th);
+			th.start();
+		}
+		for(Thread th : threads)
+			th.join();
+
+		assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+		int attendees = poli.listAttendees(11).split("\n").length;
+		int waiting = poli.waitlist(11).split("\n").length;
+		int withdrawn = (nStudents + 49) / 50;
+		assertEquals("Seats not filled", seats, attendees);
+		assertEquals("Lost registrations", nStudents - withdrawn, attendees + waiting);
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		Path log = Files.createTempFile("university", ".log");
+		Path snapshot = Files.createTempFile("university", ".snapshot");
+		try {
+			University u = new University(universityName);
+			u.activate("Macro Economics", "Paul Krugman");
+			for(int i=0; i<5; ++i)
+				u.enroll("Name" + i, "Surname" + i);
+			try(EventLog events = new EventLog(log, 4)) {
+				u.setEventLog(events);
+				u.setCapacity(10, 2);
+				for(int i=0; i<5; ++i)
+					u.register(10000 + i, 10);
+				u.withdraw(10001, 10);
+				u.withdraw(10004, 10);
+				u.setEventLog(null);
+			}
+			u.saveSnapshot(snapshot);
+
+			University restored = University.loadSnapshot(snapshot);
+			assertEquals(u.listAttendees(10), restored.listAttendees(10));
+			assertEquals(u.waitlist(10), restored.waitlist(10));
+			restored.withdraw(10000, 10);
+			assertEquals("Capacity not restored", "10002 Name2 Surname2\n10003 Name3 Surname3\n", restored.listAttendees(10));
+
+			University replayed = new University(universityName);
+			replayed.activate("Macro Economics", "Paul Krugman");
+			for(int i=0; i<5; ++i)
+				replayed.enroll("Name" + i, "Surname" + i);
+			try(EventLog events = new EventLog(log, 4)) {
+				events.replay(replayed);
+			}
+			assertEquals(u.listAttendees(10), replayed.listAttendees(10));
+			assertEquals(u.waitlist(10), replayed.waitlist(10));
+		} finally {
+			Files.delete(log);
+			Files.delete(snapshot);
+		}
+	}
+}
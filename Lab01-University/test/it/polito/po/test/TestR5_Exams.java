@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import university.GradeStore;
 import university.University;
 
 public class TestR5_Exams {
@@ -82,6 +83,21 @@ public class TestR5_Exams {
 		assertContained("Wrong average","hasn't taken any exams",avg);
 	}
 
+	@Test
+	public void testGradeAnalyticsOutOfRange() {
+		poli.exam(10000, 10, 31);
+		poli.exam(10001, 10, -5);
+		poli.exam(10003, 10, 18);
+
+		GradeStore grades = poli.getGradeStore();
+		int[] h = grades.histogram(10);
+		assertEquals("Grade above the maximum should be counted as the maximum", 1, h[GradeStore.MAX_GRADE]);
+		assertEquals("Negative grade is not a taken exam", 0, h[0]);
+		assertEquals("Wrong median", 18, grades.percentile(10, 50));
+		assertEquals("Wrong pass rate", 1.0, grades.passRate(10), 0.001);
+		assertTrue("Course before the first one", Double.isNaN(grades.courseAverages(11, 1)[0]));
+	}
+
 	@Test @Ignore("Input sanitization was not in the requirements, so not checking it.")
 	public void testStudentAverageNotEnrolled() {
 		final int studentId = 10001;
@@ -132,6 +148,48 @@ public class TestR5_Exams {
 		assertContained("Wrong message","No student has taken",avg);
 	}
 
+	@Test
+	public void testRegradeUpdatesAverages() {
+		final int studentId = 10001;
+		poli.exam(studentId, 10, 20);
+		poli.exam(studentId, 11, 24);
+		poli.exam(studentId+2, 10, 26);
+		
+		poli.exam(studentId, 10, 30); // re-graded
+		
+		assertContained("Wrong student average after regrade", "27", poli.studentAvg(studentId));
+		assertContained("Wrong course average after regrade", "28", poli.courseAvg(10));
+	}
+
+	@Test
+	public void testGradeAnalytics() {
+		poli.exam(10000, 10, 27);
+		poli.exam(10001, 10, 20);
+		poli.exam(10003, 10, 17);
+		poli.exam(10001, 10, 30); // re-graded
+		poli.exam(10001, 11, 24);
+		
+		GradeStore grades = poli.getGradeStore();
+		assertEquals("Re-graded exam should not add a row", 4, grades.size());
+		
+		int[] h = grades.histogram(10);
+		assertEquals(1, h[17]);
+		assertEquals(1, h[27]);
+		assertEquals(1, h[30]);
+		assertEquals("Old grade still in the histogram", 0, h[20]);
+		
+		assertEquals("Wrong median", 27, grades.percentile(10, 50));
+		assertEquals("Wrong pass rate", 2.0/3, grades.passRate(10), 0.001);
+		assertEquals("Wrong course average", 74.0/3, grades.courseAverage(10), 0.001);
+		assertEquals("Wrong course average", 24.0, grades.courseAverages(10, 4)[1], 0.001);
+		assertTrue("Course without exams", Double.isNaN(grades.courseAverages(10, 4)[2]));
+		
+		float[] scores = poli.awardScores();
+		assertEquals("Wrong score", 37.0, scores[0], 0.001);
+		assertEquals("Wrong score", 27.0 + 2.0/3*10, scores[1], 0.001);
+		assertTrue("Student without exams", Float.isNaN(scores[2]));
+	}
+
 	@Test @Ignore("Input sanitization was not in the requirements, so not checking it.")
 	public void testExamWrongParams() {
 		final int courseId = 10;
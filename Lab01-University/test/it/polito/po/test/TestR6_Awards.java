@@ -112,4 +112,24 @@ public class TestR6_Awards {
 		assertContained("Wrong top student score","37",rank[0]);
 	}
 
+	@Test
+	public void testTopK() {
+		poli.exam(10000, 10, 25);
+		poli.exam(10001, 10, 26);
+		poli.exam(10001, 11, 28);
+		poli.exam(10003, 10, 26);
+		poli.exam(10003, 11, 26);
+		
+		String[] rank = poli.topStudents(2).split("\n");
+		assertEquals("Expected two students",2,rank.length);
+		assertContained("Wrong top student","Bianchi",rank[0]);
+		
+		// a new registration lowers the bonus of the leader
+		poli.register(10003, 12);
+		rank = poli.topStudents(10).split("\n");
+		assertEquals("Only students with exams should be ranked",3,rank.length);
+		assertContained("Wrong top student after register","Rossi",rank[0]);
+		assertContained("Wrong top student score","35",rank[0]);
+	}
+
 }
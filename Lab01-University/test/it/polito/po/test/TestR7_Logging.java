@@ -2,7 +2,13 @@ package it.polito.po.test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -11,6 +17,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import university.AsyncAuditHandler;
 import university.University;
 
 import static it.polito.po.test.TestR5_Exams.*;
@@ -52,6 +59,115 @@ public class TestR7_Logging {
 		assertContained("Wrong log message","10000",s);
 	}
 
+	@Test
+	public void testAsyncHandler() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountingHandler target = new CountingHandler(release);
+		AsyncAuditHandler audit = new AsyncAuditHandler(target, 4);
+		
+		final int n = 20;
+		for(int i=0; i<n; ++i)
+			audit.publish(new LogRecord(Level.INFO, "record " + i));
+		
+		assertTrue("Records should be dropped when the buffer is full", audit.getDropped() > 0);
+		
+		release.countDown();
+		audit.close();
+		
+		assertEquals("Lost records", n, audit.getFlushed() + audit.getDropped());
+		assertEquals("Wrong number of published records", audit.getFlushed(), target.count.get());
+	}
+
+	@Test
+	public void testAsyncHandlerFailingTarget() {
+		AtomicInteger published = new AtomicInteger();
+		Handler target = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				if(published.incrementAndGet()%2==0)
+					throw new IllegalStateException("target failure");
+			}
+			@Override
+			public void flush() {}
+			@Override
+			public void close() {}
+		};
+		AsyncAuditHandler audit = new AsyncAuditHandler(target, 64);
+		AtomicInteger errors = new AtomicInteger();
+		audit.setErrorManager(new ErrorManager() {
+			@Override
+			public void error(String msg, Exception ex, int code) {
+				if(code==ErrorManager.WRITE_FAILURE)
+					errors.incrementAndGet();
+			}
+		});
+
+		final int n = 10;
+		for(int i=0; i<n; ++i)
+			audit.publish(new LogRecord(Level.INFO, "record " + i));
+		audit.close();
+
+		assertEquals("The writer should keep draining after a failure", n, published.get());
+		assertEquals("Wrong number of reported errors", n/2, errors.get());
+		assertEquals("Lost records", n, audit.getFlushed());
+	}
+
+	@Test
+	public void testAsyncHandlerSource() {
+		List<LogRecord> published = new ArrayList<>();
+		Handler target = new Handler() {
+			@Override
+			public synchronized void publish(LogRecord record) {
+				published.add(record);
+			}
+			@Override
+			public void flush() {}
+			@Override
+			public void close() {}
+		};
+		AsyncAuditHandler audit = new AsyncAuditHandler(target, 16);
+		logSpy.disable();
+		Logger ul = Logger.getLogger("University");
+		boolean parent = ul.getUseParentHandlers();
+		ul.setUseParentHandlers(false);
+		ul.addHandler(audit);
+		try {
+			poli.enroll("Mario","Rossi");
+		} finally {
+			ul.removeHandler(audit);
+			ul.setUseParentHandlers(parent);
+			audit.close();
+		}
+
+		synchronized(target) {
+			assertEquals("Wrong number of published records", 1, published.size());
+			LogRecord r = published.get(0);
+			assertEquals("Wrong source class", University.class.getName(), r.getSourceClassName());
+			assertEquals("Wrong source method", "enroll", r.getSourceMethodName());
+		}
+	}
+
+	private static class CountingHandler extends Handler {
+		final AtomicInteger count = new AtomicInteger();
+		final CountDownLatch release;
+		CountingHandler(CountDownLatch release){
+			this.release = release;
+		}
+		@Override
+		public void publish(LogRecord record) {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			count.incrementAndGet();
+		}
+		@Override
+		public void flush() {}
+		@Override
+		public void close() {}
+	}
+
 	private static class LogSpy {
 		private LogRecord[] records = new LogRecord[20];
 		private int nextRecord=0;
@@ -0,0 +1,191 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR8_Scalability {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.setRector("Guido", "Saracco");
+	}
+
+	@Test
+	public void testManyStudents() {
+		final int n = 5000;
+		int last = 0;
+		for(int i=0; i<n; ++i)
+			last = poli.enroll("Name" + i, "Surname" + i);
+
+		assertEquals("Wrong id for last student", 10000 + n - 1, last);
+		assertEquals("Wrong student info", last + " Name" + (n-1) + " Surname" + (n-1), poli.student(last));
+	}
+
+	@Test
+	public void testManyCourses() {
+		final int n = 200;
+		int last = 0;
+		for(int i=0; i<n; ++i)
+			last = poli.activate("Course" + i, "Teacher" + i);
+
+		assertEquals("Wrong code for last course", 10 + n - 1, last);
+		assertEquals("Wrong course info", last + ",Course" + (n-1) + ",Teacher" + (n-1), poli.course(last));
+	}
+
+	@Test
+	public void testLargeCourseAndStudyPlan() {
+		final int nStudents = 1000;
+		final int nCourses = 60;
+		for(int i=0; i<nStudents; ++i)
+			poli.enroll("Name" + i, "Surname" + i);
+		for(int i=0; i<nCourses; ++i)
+			poli.activate("Course" + i, "Teacher" + i);
+
+		for(int i=0; i<nStudents; ++i)
+			poli.register(10000 + i, 10);
+		for(int i=1; i<nCourses; ++i)
+			poli.register(10000, 10 + i);
+
+		String attendees = poli.listAttendees(10);
+		assertEquals("Wrong number of attendees", nStudents, attendees.split("\n").length);
+
+		String plan = poli.studyPlan(10000);
+		assertEquals("Wrong number of courses in study plan", nCourses, plan.split("\n").length);
+	}
+
+	@Test
+	public void testBulkImport() throws IOException {
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.ensureCapacity(100, 10);
+
+		int n = poli.importStudents(new StringReader("Mario,Rossi\nFrancesca,Verdi\n\nLaura,Bianchi\n"));
+		assertEquals("Wrong number of imported students", 3, n);
+		assertEquals("Wrong student info", "10002 Laura Bianchi", poli.student(10002));
+
+		n = poli.importRegistrations(new StringReader("10000,10\n10001,10\n10001,11\n10002,11\n"));
+		assertEquals("Wrong number of imported registrations", 4, n);
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10001 Francesca Verdi\n", poli.listAttendees(10));
+
+		n = poli.importGrades(new StringReader("10000,10,24\n10001,10,30\n10001,11,28\n"));
+		assertEquals("Wrong number of imported grades", 3, n);
+		assertEquals("Student 10001 : 29.0", poli.studentAvg(10001));
+		assertEquals("The average for the course Macro Economics is: 27.0", poli.courseAvg(10));
+	}
+
+	@Test
+	public void testBulkImportInvalidRows() throws IOException {
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.importStudents(new StringReader("Mario,Rossi\nFrancesca,Verdi\n"));
+
+		String[] invalid = {
+				"10000,10\n\n10001\n",
+				"10000,10\n\n10001,ten\n",
+				"10000,10\n\n10005,10\n",
+				"10000,10\n\n10001,12\n" };
+		for(String rows : invalid) {
+			try {
+				poli.importRegistrations(new StringReader(rows));
+				fail("Invalid row should be rejected: " + rows);
+			} catch(IOException e) {
+				assertContained("The error should name the line", "Line 3", e.getMessage());
+			}
+		}
+		assertEquals("Rows before the invalid one should not be imported", "", poli.listAttendees(10));
+
+		try {
+			poli.importStudents(new StringReader("Laura,Bianchi\nGiuseppe\n"));
+			fail("Invalid row should be rejected");
+		} catch(IOException e) {
+			assertContained("The error should name the line", "Line 2", e.getMessage());
+		}
+		assertEquals("Student Not Found", poli.student(10002));
+
+		try {
+			poli.importGrades(new StringReader("10000,10\n"));
+			fail("Invalid row should be rejected");
+		} catch(IOException e) {
+			assertContained("The error should name the line", "Line 1", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		for(int i=0; i<50; ++i)
+			poli.enroll("Name" + i, "Surname" + i);
+		for(int i=0; i<5; ++i)
+			poli.activate("Course" + i, "Teacher" + i);
+		for(int i=49; i>=0; --i)
+			for(int j=0; j<3; ++j)
+				poli.register(10000 + i, 10 + (i+j)%5);
+		for(int i=0; i<50; i+=2)
+			poli.exam(10000 + i, 10 + i%5, 18 + i%13);
+
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			poli.saveSnapshot(file);
+			University restored = University.loadSnapshot(file);
+
+			assertEquals(poli.getName(), restored.getName());
+			assertEquals(poli.getRector(), restored.getRector());
+			for(int i=0; i<50; ++i) {
+				assertEquals(poli.student(10000 + i), restored.student(10000 + i));
+				assertEquals(poli.studyPlan(10000 + i), restored.studyPlan(10000 + i));
+				assertEquals(poli.studentAvg(10000 + i), restored.studentAvg(10000 + i));
+			}
+			for(int i=0; i<5; ++i) {
+				assertEquals(poli.course(10 + i), restored.course(10 + i));
+				assertEquals(poli.listAttendees(10 + i), restored.listAttendees(10 + i));
+				assertEquals(poli.courseAvg(10 + i), restored.courseAvg(10 + i));
+			}
+			assertEquals(poli.topStudents(10), restored.topStudents(10));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testRenderCache() {
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+
+		assertEquals("10000 Mario Rossi\n", poli.listAttendees(10));
+		assertEquals("10,Macro Economics,Paul Krugman\n", poli.studyPlan(10000));
+		assertEquals("10000 Mario Rossi\n", poli.listAttendees(10));
+		poli.studyPlan(10000);
+		assertEquals("Wrong number of misses", 2, poli.getCacheMisses());
+		assertEquals("Wrong number of hits", 2, poli.getCacheHits());
+
+		poli.register(10001, 10);
+		assertEquals("Stale roster", "10000 Mario Rossi\n10001 Francesca Verdi\n", poli.listAttendees(10));
+		poli.studyPlan(10000);
+		assertEquals("Only the affected course should be rebuilt", 3, poli.getCacheMisses());
+
+		poli.register(10000, 11);
+		assertEquals("Stale study plan", "10,Macro Economics,Paul Krugman\n11,Object Oriented Programming,James Gosling\n", poli.studyPlan(10000));
+	}
+}
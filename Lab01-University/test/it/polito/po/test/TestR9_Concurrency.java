@@ -0,0 +1,90 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR9_Concurrency {
+
+	static final String universityName = "Politecnico di Torino";
+	private static final Logger ul = Logger.getLogger("University");
+	private University poli;
+
+	@Before
+	public void setUp() {
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.setRector("Guido", "Saracco");
+	}
+
+	@Test
+	public void testParallelRegistrationsAndExams() throws Exception {
+		final int nThreads = 8;
+		final int nStudents = 4000;
+		final int nCourses = 20;
+		final int perStudent = 5;
+
+		for(int i=0; i<nCourses; ++i)
+			poli.activate("Course" + i, "Teacher" + i);
+
+		CyclicBarrier start = new CyclicBarrier(nThreads);
+		List<Thread> threads = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
+		for(int t=0; t<nThreads; ++t) {
+			final int id = t;
+			Thread th = new Thread(() -> {
+				try {
+					start.await();
+					for(int i=id; i<nStudents; i+=nThreads) {
+						int s = poli.enroll("Name" + i, "Surname" + i);
+						for(int j=0; j<perStudent; ++j)
+							poli.register(s, 10 + (i+j)%nCourses);
+						for(int j=0; j<perStudent; ++j)
+							poli.exam(s, 10 + (i+j)%nCourses, 18 + j);
+					}
+				} catch(Throwable e) {
+					synchronized(failures) {
+						failures.add(e);
+					}
+				}
+			});
+			threads.add(th);
+			th.start();
+		}
+		for(Thread th : threads)
+			th.join();
+
+		assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+
+		int attendees = 0;
+		for(int c=0; c<nCourses; ++c)
+			attendees += poli.listAttendees(10 + c).split("\n").length;
+		assertEquals("Lost registrations", nStudents*perStudent, attendees);
+
+		for(int i=0; i<nStudents; ++i)
+			assertEquals("Wrong study plan size", perStudent, poli.studyPlan(10000 + i).split("\n").length);
+
+		// every student has marks 18..22 on all courses: average 20.0, full bonus
+		assertEquals("Student 10000 : 20.0", poli.studentAvg(10000));
+		assertEquals("Lost ranking entries", nStudents, poli.topStudents(nStudents).split("\n").length);
+		assertContained("Wrong score", ": 30.0", poli.topStudents(1));
+
+		// grades appended concurrently, across several chunks of the store
+		assertEquals("Lost grades", nStudents*perStudent, poli.getGradeStore().size());
+		double[] avg = poli.getGradeStore().courseAverages(10, nCourses);
+		for(int c=0; c<nCourses; ++c)
+			assertEquals("Wrong course average", 20.0, avg[c], 0.001);
+	}
+}
@@ -0,0 +1,589 @@
+package hydraulic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat, pre-compiled form of the elements reachable from the sources of an {@link HSystem}.
+ *
+ * The elements are laid out in depth-first pre-order, i.e. every element comes
+ * after the one feeding it, so a simulation is a single loop over primitive arrays
+ * that produces the same notifications, in the same order, as {@link HSystem#simulate(SimulationObserver)}.
+ *
+ * Each output flow of an element is {@code offset + gain * inFlow}: the gain is
+ * 1 or 0 for a tap, 1/2 for a split and the proportion for a multi-split, while
+ * the offset is the flow of a source.
+ * The connections are fixed when the network is compiled, while source flows,
+ * tap states and multi-split proportions are read from the elements at every run.
+ * After a first simulation, {@link #update(SimulationObserver)} re-computes only
+ * the sub-networks downstream of the elements whose state changed: since every
+ * sub-network is a contiguous range of the layout, this is a scan of the range.
+ * The flows passed to the observer are kept in buffers owned by the network
+ * and overwritten by the following runs: observers that retain them must copy them.
+ * Runs notifying a {@link FlowObserver} identify the elements by position
+ * and allocate no memory.
+ */
+public class CompiledNetwork {
+
+	static final byte SOURCE = 0;
+	static final byte TAP = 1;
+	static final byte SPLIT = 2;
+	static final byte MULTISPLIT = 3;
+	static final byte SINK = 4;
+
+	static final String[] TYPES = {"Source", "Tap", "Split", "Multi Split", "Sink"};
+
+	final Element[] elements;
+	final Map<Element,Integer> index;
+	final String[] names;
+	final byte[] kinds;
+	// element feeding each element, the element itself for the roots
+	final int[] parent;
+	// output slot feeding each element, the last (empty) slot for the roots
+	final int[] inSlot;
+	// outputs of element i are the slots first[i] .. first[i+1]-1
+	final int[] first;
+	// element connected to each slot, -1 if none
+	final int[] children;
+	// elements i+1 .. end[i]-1 are the sub-network downstream of element i
+	final int[] end;
+	final double[] gain;
+	final double[] offset;
+	final double[] in;
+	final double[][] out;
+	// elements whose state is read at every run
+	final int[] sources;
+	final int[] taps;
+	final int[] multisplits;
+	// version of the topology published by the system, 0 if compiled directly
+	private final long version;
+	private boolean simulated;
+	// elements changed by the current update, marked with the update epoch
+	private final int[] stamp;
+	private int epoch;
+	private int[] changed = new int[16];
+	private int nChanged;
+	private boolean sorted;
+	// elements whose state changed, re-used by every update
+	private int[] modified = new int[16];
+
+	CompiledNetwork(Element[] system) {
+		this(system, 0);
+	}
+
+	CompiledNetwork(Element[] system, long version) {
+		this.version = version;
+		List<Element> order = new ArrayList<>();
+		index = new IdentityHashMap<>();
+		Deque<Element> stack = new ArrayDeque<>();
+		for(Element x : system) {
+			if(!(x instanceof Source))
+				continue;
+			stack.push(x);
+			while(!stack.isEmpty()) {
+				Element e = stack.pop();
+				if(index.put(e, order.size())!=null)
+					throw new IllegalStateException("Element " + e.getName() + " is reached more than once");
+				order.add(e);
+				Element[] outputs = outputsOf(e);
+				for(int k=outputs.length-1; k>=0; k--)
+					if(outputs[k]!=null)
+						stack.push(outputs[k]);
+			}
+		}
+
+		int n = order.size();
+		elements = order.toArray(new Element[n]);
+		names = new String[n];
+		kinds = new byte[n];
+		parent = new int[n];
+		inSlot = new int[n];
+		first = new int[n+1];
+		in = new double[n];
+		out = new double[n][];
+		int slots = 0;
+		int[] count = new int[TYPES.length];
+		for(int i=0; i<n; i++) {
+			kinds[i] = kindOf(elements[i]);
+			count[kinds[i]]++;
+			slots += slotsOf(elements[i], kinds[i]);
+		}
+		children = new int[slots];
+		gain = new double[slots+1];
+		offset = new double[slots+1];
+		sources = new int[count[SOURCE]];
+		taps = new int[count[TAP]];
+		multisplits = new int[count[MULTISPLIT]];
+
+		int nSources=0, nTaps=0, nMultisplits=0;
+		for(int i=0; i<n; i++) {
+			parent[i] = i;
+			inSlot[i] = slots;
+		}
+		slots = 0;
+		for(int i=0; i<n; i++) {
+			Element e = elements[i];
+			names[i] = e.getName();
+			switch(kinds[i]) {
+			case SOURCE: sources[nSources++] = i; break;
+			case TAP: taps[nTaps++] = i; break;
+			case MULTISPLIT: multisplits[nMultisplits++] = i; break;
+			default:
+			}
+			first[i] = slots;
+			Element[] outputs = outputsOf(e);
+			int m = slotsOf(e, kinds[i]);
+			out[i] = new double[m];
+			for(int j=0; j<m; j++, slots++) {
+				int c = j<outputs.length && outputs[j]!=null ? index.get(outputs[j]) : -1;
+				children[slots] = c;
+				if(c>=0) {
+					parent[c] = i;
+					inSlot[c] = slots;
+				}
+				if(kinds[i]==SPLIT)
+					gain[slots] = 0.5;
+				else if(kinds[i]==SINK)
+					offset[slots] = SimulationObserver.NO_FLOW;
+			}
+		}
+		first[n] = slots;
+
+		end = new int[n];
+		for(int i=n-1; i>=0; i--) {
+			end[i] = i+1;
+			for(int k=first[i]; k<first[i+1]; k++)
+				if(children[k]>=0)
+					end[i] = Math.max(end[i], end[children[k]]);
+		}
+		stamp = new int[n];
+	}
+
+	/**
+	 * Creates a network sharing the immutable topology of another one,
+	 * with its own flows and state
+	 */
+	CompiledNetwork(CompiledNetwork topology) {
+		version = topology.version;
+		elements = topology.elements;
+		index = topology.index;
+		names = topology.names;
+		kinds = topology.kinds;
+		parent = topology.parent;
+		inSlot = topology.inSlot;
+		first = topology.first;
+		children = topology.children;
+		end = topology.end;
+		sources = topology.sources;
+		taps = topology.taps;
+		multisplits = topology.multisplits;
+		gain = topology.gain.clone();
+		offset = topology.offset.clone();
+		in = new double[elements.length];
+		out = new double[elements.length][];
+		for(int i=0; i<out.length; i++)
+			out[i] = new double[first[i+1]-first[i]];
+		stamp = new int[elements.length];
+	}
+
+	static byte kindOf(Element e) {
+		if(e instanceof Source)
+			return SOURCE;
+		if(e instanceof Tap)
+			return TAP;
+		if(e instanceof Multisplit)
+			return MULTISPLIT;
+		if(e instanceof Split)
+			return SPLIT;
+		if(e instanceof Sink)
+			return SINK;
+		throw new IllegalArgumentException("Unsupported element " + e.getName());
+	}
+
+	static Element[] outputsOf(Element e) {
+		if(e instanceof Split)
+			return ((Split)e).outputs;
+		if(e instanceof Sink)
+			return new Element[0];
+		return new Element[] {e.getOutput()};
+	}
+
+	/**
+	 * @return number of flows notified for the element
+	 */
+	private static int slotsOf(Element e, byte kind) {
+		switch(kind) {
+		case SPLIT: return 2;
+		case MULTISPLIT: return ((Split)e).outputs.length;
+		default: return 1;
+		}
+	}
+
+	/**
+	 * @return number of compiled elements
+	 */
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * @return the version of the topology, as published by {@link HSystem#edit(java.util.function.Consumer)},
+	 * 		0 for networks returned by {@link HSystem#compile()}
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param i position of the element, between 0 and {@link #size()}-1
+	 * @return the element at the given position, in depth-first order
+	 */
+	public Element getElement(int i) {
+		return elements[i];
+	}
+
+	/**
+	 * @param e an element
+	 * @return the position of the element, or -1 if it was not compiled
+	 */
+	public int indexOf(Element e) {
+		Integer i = index.get(e);
+		return i==null ? -1 : i;
+	}
+
+	/**
+	 * @param i position of the element, between 0 and {@link #size()}-1
+	 * @return the type of the element, as notified to a {@link SimulationObserver}
+	 */
+	public String getType(int i) {
+		return TYPES[kinds[i]];
+	}
+
+	/**
+	 * @param i position of the element, between 0 and {@link #size()}-1
+	 * @return the input flow computed by the last simulation
+	 */
+	public double getInFlow(int i) {
+		return parent[i]==i ? SimulationObserver.NO_FLOW : in[i];
+	}
+
+	/**
+	 * Computes the flows of all the elements
+	 *
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 * 		when only the flows returned by {@link #getInFlow(int)} are needed
+	 */
+	public void simulate(SimulationObserver observer) {
+		simulateFlows(adapt(observer));
+	}
+
+	/**
+	 * Computes the flows of all the elements, without allocations
+	 *
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 * @see #simulate(SimulationObserver)
+	 */
+	public void simulateFlows(FlowObserver observer) {
+		refresh();
+		propagate();
+		simulated = true;
+		if(observer!=null)
+			notifyFlows(observer);
+	}
+
+	/**
+	 * Notifies the flows of all the elements computed by the last run
+	 */
+	void notifyFlows(FlowObserver observer) {
+		for(int i=0; i<in.length; i++)
+			notifyFlow(i, observer);
+	}
+
+	/**
+	 * Creates an observer forwarding the notifications of this network,
+	 * with the type and name of the elements, to a {@link SimulationObserver}
+	 *
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 * @return the adapter, {@code null} if the observer is {@code null}
+	 */
+	public FlowObserver adapt(SimulationObserver observer) {
+		if(observer==null)
+			return null;
+		return (i, inFlow, flows) -> observer.notifyFlow(TYPES[kinds[i]], names[i], inFlow, flows);
+	}
+
+	/**
+	 * Re-reads the state of all the sources, taps and multi-splits and re-computes
+	 * only the sub-networks downstream of the elements that changed since the last run.
+	 *
+	 * The observer is notified, in depth-first order, about the changed elements
+	 * and the elements whose input flow changed.
+	 * If the network was never simulated, this is a full simulation.
+	 *
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 */
+	public void update(SimulationObserver observer) {
+		updateFlows(adapt(observer));
+	}
+
+	/**
+	 * Re-computes only the sub-networks downstream of the changed elements, without allocations
+	 *
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 * @see #update(SimulationObserver)
+	 */
+	public void updateFlows(FlowObserver observer) {
+		if(!simulated) {
+			simulateFlows(observer);
+			return;
+		}
+		begin();
+		for(int i : sources)
+			if(readState(i))
+				mark(i);
+		for(int i : taps)
+			if(readState(i))
+				mark(i);
+		for(int i : multisplits)
+			if(readState(i))
+				mark(i);
+		// the upstream changes must be applied first
+		int n = nChanged;
+		if(modified.length<n)
+			modified = new int[changed.length];
+		System.arraycopy(changed, 0, modified, 0, n);
+		Arrays.sort(modified, 0, n);
+		begin();
+		for(int j=0; j<n; j++) {
+			mark(modified[j]);
+			propagateFrom(modified[j]);
+		}
+		finish(observer);
+	}
+
+	/**
+	 * Re-reads the state of a single element, e.g. after opening a tap,
+	 * and re-computes only the sub-network downstream of it.
+	 *
+	 * The observer is notified, in depth-first order, about the element,
+	 * if its state changed, and the elements whose input flow changed.
+	 * If the network was never simulated, this is a full simulation.
+	 *
+	 * @param e the changed element
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 */
+	public void update(Element e, SimulationObserver observer) {
+		updateFlows(e, adapt(observer));
+	}
+
+	/**
+	 * Re-computes only the sub-network downstream of a changed element, without allocations
+	 *
+	 * @param e the changed element
+	 * @param observer the observer receiving the notifications, may be {@code null}
+	 * @see #update(Element, SimulationObserver)
+	 */
+	public void updateFlows(Element e, FlowObserver observer) {
+		int i = indexOf(e);
+		if(i<0)
+			throw new IllegalArgumentException("Element " + e.getName() + " is not part of the network");
+		if(!simulated) {
+			simulateFlows(observer);
+			return;
+		}
+		begin();
+		if(readState(i)) {
+			mark(i);
+			propagateFrom(i);
+		}
+		finish(observer);
+	}
+
+	/**
+	 * Computes the largest flow each source can deliver without exceeding the maximum flow
+	 * of any element downstream, as checked by {@link HSystem#simulate(SimulationObserver, boolean)},
+	 * given the current state of taps and multi-splits.
+	 *
+	 * The flow entering each element is the flow of its source times the product
+	 * of the gains along the path, so each element bounds the flow of its source
+	 * to its maximum flow divided by that product: the bounds are collected in a
+	 * single pass in depth-first order.
+	 * Elements behind a closed tap put no bound, while elements whose maximum flow
+	 * was never set have maximum flow 0.
+	 *
+	 * @return the largest flow of each source, in depth-first order,
+	 * 		{@link Double#POSITIVE_INFINITY} if nothing bounds it
+	 */
+	public Map<Source,Double> maxSourceFlows() {
+		refresh();
+		int n = elements.length;
+		// gain from the source to each element and the source feeding it
+		double[] path = new double[n];
+		int[] root = new int[n];
+		double[] bound = new double[n];
+		for(int i=0; i<n; i++) {
+			int p = parent[i];
+			if(p==i) {
+				root[i] = i;
+				path[i] = 0.0;
+				bound[i] = Double.POSITIVE_INFINITY;
+				continue;
+			}
+			root[i] = root[p];
+			path[i] = p==root[i] ? 1.0 : gain[inSlot[i]]*path[p];
+			if(path[i]>0) {
+				double max = elements[i].getMaxFlow();
+				double f = max/path[i];
+				// the flow must not exceed the maximum once multiplied back
+				if(f*path[i]>max)
+					f = Math.nextDown(f);
+				if(f<bound[root[i]])
+					bound[root[i]] = Math.max(f, 0.0);
+			}
+		}
+		Map<Source,Double> flows = new LinkedHashMap<>();
+		for(int i : sources)
+			flows.put((Source)elements[i], bound[i]);
+		return flows;
+	}
+
+	/**
+	 * Simulates the network if it was never simulated or its flows
+	 * no longer match the state of the elements
+	 */
+	void prepare() {
+		refresh();
+		if(!simulated)
+			simulateFlows(null);
+	}
+
+	/**
+	 * Changes the flow of a source or the opening of a tap, without changing the element,
+	 * and re-computes the sub-network downstream of it
+	 *
+	 * @param i position of the source or tap
+	 * @param value flow of the source, 1 or 0 for a tap
+	 */
+	void apply(int i, double value) {
+		if(set(kinds[i]==SOURCE ? offset : gain, first[i], value)) {
+			mark(i);
+			propagateFrom(i);
+		}
+	}
+
+	/**
+	 * Reads the state of sources, taps and multi-splits into the slots
+	 */
+	void refresh() {
+		boolean modified = false;
+		for(int i : sources)
+			modified |= readState(i);
+		for(int i : taps)
+			modified |= readState(i);
+		for(int i : multisplits)
+			modified |= readState(i);
+		// the flows no longer match the state
+		if(modified)
+			simulated = false;
+	}
+
+	/**
+	 * Reads the state of an element into its slots
+	 *
+	 * @return {@code true} if the state changed
+	 */
+	private boolean readState(int i) {
+		switch(kinds[i]) {
+		case SOURCE:
+			return set(offset, first[i], ((Source)elements[i]).getFlow());
+		case TAP:
+			return set(gain, first[i], ((Tap)elements[i]).isOpen() ? 1.0 : 0.0);
+		case MULTISPLIT:
+			double[] p = ((Multisplit)elements[i]).getProportions();
+			boolean modified = false;
+			for(int k=first[i], j=0; k<first[i+1]; k++, j++)
+				modified |= set(gain, k, p!=null && j<p.length ? p[j] : 0.0);
+			return modified;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean set(double[] values, int k, double v) {
+		if(Double.compare(values[k], v)==0)
+			return false;
+		values[k] = v;
+		return true;
+	}
+
+	/**
+	 * Computes the input flows in a single branch-free pass,
+	 * the parent of each element comes before it
+	 */
+	void propagate() {
+		for(int i=0; i<in.length; i++) {
+			int k = inSlot[i];
+			in[i] = offset[k] + gain[k]*in[parent[i]];
+		}
+	}
+
+	/**
+	 * Re-computes the input flows downstream of an element,
+	 * skipping the sub-networks whose input did not change
+	 */
+	private void propagateFrom(int changedElement) {
+		int i = changedElement+1;
+		while(i<end[changedElement]) {
+			int k = inSlot[i];
+			double flow = offset[k] + gain[k]*in[parent[i]];
+			if(Double.compare(flow, in[i])==0) {
+				i = end[i];
+				continue;
+			}
+			in[i] = flow;
+			mark(i);
+			i++;
+		}
+	}
+
+	void begin() {
+		epoch++;
+		nChanged = 0;
+		sorted = true;
+	}
+
+	private void mark(int i) {
+		if(stamp[i]==epoch)
+			return;
+		stamp[i] = epoch;
+		if(nChanged==changed.length)
+			changed = Arrays.copyOf(changed, nChanged*2);
+		if(nChanged>0 && changed[nChanged-1]>i)
+			sorted = false;
+		changed[nChanged++] = i;
+	}
+
+	private void finish(FlowObserver observer) {
+		if(observer==null)
+			return;
+		// nested changes can mark elements out of order
+		if(!sorted)
+			Arrays.sort(changed, 0, nChanged);
+		for(int j=0; j<nChanged; j++)
+			notifyFlow(changed[j], observer);
+	}
+
+	private void notifyFlow(int i, FlowObserver observer) {
+		double flow = in[i];
+		double[] o = out[i];
+		for(int k=first[i], j=0; j<o.length; k++, j++)
+			o[j] = offset[k] + gain[k]*flow;
+		observer.notifyFlow(i, getInFlow(i), o);
+	}
+}
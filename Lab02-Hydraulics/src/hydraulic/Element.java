@@ -1,5 +1,8 @@
 package hydraulic;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 
 /**
  * Represents the generic abstract element of an hydraulics system.
@@ -67,6 +70,26 @@ public abstract class Element {
 	public void setInput(Element input) {
 		this.input = input;
 	}
+
+	/**
+	 * Connections of an element, saved to undo a failed edit
+	 */
+	record Links(Element input, Element output, Element[] outputs, int nOutputs) {}
+
+	/**
+	 * @return the current connections of this element
+	 */
+	Links saveLinks() {
+		return new Links(input, output, null, 0);
+	}
+
+	/**
+	 * Restores the connections saved by {@link #saveLinks()}
+	 */
+	void restoreLinks(Links links) {
+		this.input = links.input();
+		this.output = links.output();
+	}
 	
 	/**
 	 * Defines the maximum input flow acceptable for this element
@@ -86,9 +109,35 @@ public abstract class Element {
 		return maxFlow;
 	}
 	
-	public abstract void elementSimulate(double prevFlow, SimulationObserver observer);
+	/**
+	 * Simulates this element and the network downstream of it
+	 * 
+	 * @param prevFlow input flow of the element
+	 * @param observer the observer receiving the notifications
+	 */
+	public void elementSimulate(double prevFlow, SimulationObserver observer) {
+		Traversal.simulate(this, prevFlow, observer);
+	}
 
-	protected abstract StringBuffer printLayout(StringBuffer s);
+	/**
+	 * Notifies the flows of this element and schedules its outputs
+	 */
+	protected abstract void simulateStep(double prevFlow, SimulationObserver observer, Traversal next);
+
+	protected StringBuffer printLayout(StringBuffer s) {
+		try {
+			Traversal.layout(this, new LayoutWriter(s, s.length()-s.lastIndexOf("\n")-1));
+		} catch(IOException e) {
+			// never thrown by a StringBuffer
+			throw new UncheckedIOException(e);
+		}
+		return s;
+	}
+
+	/**
+	 * Writes this element to the layout and schedules its outputs
+	 */
+	protected abstract void layoutStep(LayoutWriter s, Traversal next) throws IOException;
 
 	public boolean delete(String name) {
 		input.output=this.getOutput();
@@ -96,7 +145,14 @@ public abstract class Element {
 		return true;
 	}
 
-	protected abstract void testFlow(double d, SimulationObserver observer);
+	protected void testFlow(double prevFlow, SimulationObserver observer) {
+		Traversal.testFlow(this, prevFlow, observer);
+	}
+
+	/**
+	 * Checks the maximum flow of this element and schedules its outputs
+	 */
+	protected abstract void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next);
 
 	protected boolean deleteSink(String name) {
 		return true;
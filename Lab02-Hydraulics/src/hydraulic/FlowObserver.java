@@ -0,0 +1,24 @@
+package hydraulic;
+
+/**
+ * Allocation-free observer of the simulations of a {@link CompiledNetwork}.
+ *
+ * Elements are identified by their position in the network and the output
+ * flows are passed in a buffer owned by the network, that is overwritten
+ * by the following notifications: observers that retain the flows must copy them.
+ * Use {@link CompiledNetwork#adapt(SimulationObserver)} to notify
+ * a {@link SimulationObserver} instead.
+ */
+@FunctionalInterface
+public interface FlowObserver {
+
+	/**
+	 * Simulation element info notification method.
+	 *
+	 * @param element position of the element in the network,
+	 * 		see {@link CompiledNetwork#getElement(int)}
+	 * @param inFlow input flow for the element, {@link SimulationObserver#NO_FLOW} for the sources
+	 * @param outFlows output flows for the element, {@link SimulationObserver#NO_FLOW} for the sinks
+	 */
+	void notifyFlow(int element, double inFlow, double[] outFlows);
+}
@@ -1,6 +1,20 @@
 package hydraulic;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Main class that acts as a container of the elements for
@@ -8,17 +22,26 @@ import java.util.Arrays;
  * 
  */
 public class HSystem {
-	private static final int MAX_ELEMENTS=100;
-
-	private Element system[] = new Element[MAX_ELEMENTS];
-	int nElements=0;
+	// elements by name, in the order they were added
+	private final Map<String,Element> system = new LinkedHashMap<>();
+	private final Collection<Element> elements = Collections.unmodifiableCollection(system.values());
+	// sources grouped by the sub-networks they feed, null when elements are added or deleted
+	private Source[][] components;
+	// null when disabled
+	private SimulationMetrics metrics;
+	// latest topology published by edit(), null until the first edit or snapshot
+	private volatile CompiledNetwork published;
+	private final Object editLock = new Object();
 // R1
 	/**
 	 * Adds a new element to the system
 	 * @param elem the new element to be added to the system
+	 * @throws IllegalArgumentException if an element with the same name is already in the system
 	 */
 	public void addElement(Element elem){
-		system[nElements++]=elem;
+		if(system.putIfAbsent(elem.getName(), elem)!=null)
+			throw new IllegalArgumentException("Element " + elem.getName() + " already in the system");
+		components=null;
 	}
 	
 	/**
@@ -27,7 +50,48 @@ public class HSystem {
 	 * 							the number of added elements
 	 */
 	public Element[] getElements(){
-		return Arrays.copyOf(system, nElements);
+		return elements.toArray(new Element[system.size()]);
+	}
+
+	/**
+	 * returns a read-only view of the elements added so far to the system,
+	 * in the order they were added, that reflects later additions and deletions
+	 * @return the elements of the system
+	 */
+	public Collection<Element> elements(){
+		return elements;
+	}
+
+	/**
+	 * @param name name of the element
+	 * @return the element with the given name, or {@code null} if none
+	 */
+	public Element getElement(String name){
+		return system.get(name);
+	}
+
+// Metrics
+	/**
+	 * Enables or disables the collection of metrics about the operations of the system
+	 * 
+	 * @param metrics the metrics to be updated, {@code null} to disable them
+	 */
+	public void setMetrics(SimulationMetrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the metrics being collected, {@code null} if disabled
+	 */
+	public SimulationMetrics getMetrics(){
+		return metrics;
+	}
+
+	private static void simulate(Source src, SimulationObserver observer, SimulationMetrics m) {
+		if(m==null)
+			src.elementSimulate(SimulationObserver.NO_FLOW, observer);
+		else
+			m.simulate(src, observer);
 	}
 
 // R4
@@ -35,51 +99,385 @@ public class HSystem {
 	 * starts the simulation of the system
 	 */
 	public void simulate(SimulationObserver observer){
-		
-		for(Element x : system) {
+		SimulationMetrics m = metrics;
+		long start = m==null ? 0 : System.nanoTime();
+		SimulationObserver obs = m==null ? observer : m.instrument(observer);
+		for(Element x : system.values()) {
 			if(x instanceof  Source )
-				x.elementSimulate(SimulationObserver.NO_FLOW, observer);	
+				simulate((Source)x, obs, m);
 		}
+		if(m!=null)
+			m.record(SimulationMetrics.SIMULATE, start);
 	}
 	
+	/**
+	 * starts the simulation of the system, simulating concurrently the
+	 * independent sub-networks fed by the sources on the common fork/join pool.
+	 * 
+	 * Sources feeding a common element are simulated by the same thread, in the
+	 * order they were added; the notifications of different sub-networks
+	 * are interleaved and reach the observer through a
+	 * {@link SimulationObserver#synchronizedObserver(SimulationObserver) synchronized} adapter.
+	 * The sub-networks are found at the first run and again only after adding or
+	 * deleting elements: after re-connecting elements the grouping may be
+	 * outdated, which affects only the interleaving of the notifications.
+	 * 
+	 * @param observer the observer receiving the notifications
+	 */
+	public void simulateParallel(SimulationObserver observer){
+		simulateParallel(observer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * starts the simulation of the system, simulating concurrently the
+	 * independent sub-networks on the given fork/join pool
+	 * 
+	 * @param observer the observer receiving the notifications
+	 * @param pool the pool running the simulation
+	 * @see #simulateParallel(SimulationObserver)
+	 */
+	public void simulateParallel(SimulationObserver observer, ForkJoinPool pool){
+		SimulationMetrics m = metrics;
+		long start = m==null ? 0 : System.nanoTime();
+		SimulationObserver obs = m==null ? observer : m.instrument(observer);
+		Source[][] groups = components();
+		if(groups.length<=1 || pool.getParallelism()<=1) {
+			// nothing to run concurrently, no need to synchronize
+			new Components(groups, obs, m, 0, groups.length, groups.length).compute();
+		} else {
+			SimulationObserver safe = SimulationObserver.synchronizedObserver(obs);
+			int chunk = Math.max(1, groups.length/(4*pool.getParallelism()));
+			pool.invoke(new Components(groups, safe, m, 0, groups.length, chunk));
+		}
+		if(m!=null)
+			m.record(SimulationMetrics.SIMULATE_PARALLEL, start);
+	}
+
+	/**
+	 * Groups the sources whose sub-networks share some element
+	 */
+	private Source[][] components(){
+		if(components!=null)
+			return components;
+		List<Source> sources = new ArrayList<>();
+		for(Element x : system.values())
+			if(x instanceof Source)
+				sources.add((Source)x);
+		int n = sources.size();
+		// union-find over the sources, each element belongs to the first source reaching it
+		int[] group = new int[n];
+		Map<Element,Integer> owner = new IdentityHashMap<>();
+		Deque<Element> stack = new ArrayDeque<>();
+		for(int i=0; i<n; i++) {
+			group[i] = i;
+			stack.push(sources.get(i));
+			while(!stack.isEmpty()) {
+				Element e = stack.pop();
+				Integer o = owner.putIfAbsent(e, i);
+				if(o!=null) {
+					int a = root(group, o), b = root(group, i);
+					group[Math.max(a, b)] = Math.min(a, b);
+					continue;
+				}
+				for(Element out : CompiledNetwork.outputsOf(e))
+					if(out!=null)
+						stack.push(out);
+			}
+		}
+		Map<Integer,List<Source>> byGroup = new LinkedHashMap<>();
+		for(int i=0; i<n; i++)
+			byGroup.computeIfAbsent(root(group, i), k -> new ArrayList<>()).add(sources.get(i));
+		components = new Source[byGroup.size()][];
+		int k = 0;
+		for(List<Source> g : byGroup.values())
+			components[k++] = g.toArray(new Source[g.size()]);
+		return components;
+	}
+
+	private static int root(int[] group, int i) {
+		while(group[i]!=i)
+			i = group[i] = group[group[i]];
+		return i;
+	}
+
+	private static class Components extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Source[][] groups;
+		private final SimulationObserver observer;
+		private final SimulationMetrics metrics;
+		private final int from, to, chunk;
+
+		Components(Source[][] groups, SimulationObserver observer, SimulationMetrics metrics, int from, int to, int chunk) {
+			this.groups = groups;
+			this.observer = observer;
+			this.metrics = metrics;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from<=chunk) {
+				for(int i=from; i<to; i++)
+					for(Source src : groups[i])
+						simulate(src, observer, metrics);
+				return;
+			}
+			int mid = (from+to) >>> 1;
+			invokeAll(new Components(groups, observer, metrics, from, mid, chunk),
+					new Components(groups, observer, metrics, mid, to, chunk));
+		}
+	}
+
+// Compiled simulation
+	/**
+	 * Compiles the elements reachable from the sources of the system
+	 * into a flat program that can be simulated many times,
+	 * without recursion and without allocations.
+	 * 
+	 * Flows, tap states and proportions can be changed between the runs,
+	 * while the system must be compiled again after changing the connections.
+	 * 
+	 * @return the compiled network
+	 */
+	public CompiledNetwork compile() {
+		return new CompiledNetwork(getElements());
+	}
+
+// Snapshots
+	/**
+	 * Saves the elements of the system, their connections and their state
+	 * in a compact binary file, that can be loaded with {@link #loadSnapshot(Path)}.
+	 * 
+	 * Elements reachable from the added ones are saved as well,
+	 * but they are not added to the loaded system.
+	 * 
+	 * @param file the destination file
+	 * @throws IOException in case of I/O errors
+	 */
+	public void saveSnapshot(Path file) throws IOException {
+		Snapshot.write(this, file);
+	}
+
+	/**
+	 * Loads a system saved with {@link #saveSnapshot(Path)}
+	 * 
+	 * @param file the snapshot file
+	 * @return the loaded system
+	 * @throws IOException in case of I/O errors or if the file is not a valid snapshot
+	 */
+	public static HSystem loadSnapshot(Path file) throws IOException {
+		return Snapshot.read(file);
+	}
+
+// Concurrent editing
+	/**
+	 * Applies a set of changes to the system, e.g. adding, connecting or
+	 * deleting elements, and publishes the new topology atomically.
+	 * 
+	 * Edits are applied one at a time; readers running simulations on
+	 * {@link #snapshot() snapshots} keep using the previous topology until they
+	 * take a new snapshot, and never see a partially applied edit.
+	 * If the changes throw an exception, or the new topology cannot be compiled,
+	 * the elements in the system and their connections are restored, the exception
+	 * is thrown and the previous topology stays published; other changes to the
+	 * elements, e.g. flows, openings and maximum flows, are not undone.
+	 * 
+	 * Every edit saves the connections and compiles the whole network, so its
+	 * cost grows with the size of the system: many changes should be applied
+	 * together by a single edit.
+	 * 
+	 * @param changes the changes to be applied to the system
+	 */
+	public void edit(Consumer<HSystem> changes){
+		synchronized(editLock) {
+			Map<String,Element> registered = new LinkedHashMap<>(system);
+			Map<Element,Element.Links> links = new IdentityHashMap<>();
+			Deque<Element> stack = new ArrayDeque<>(registered.values());
+			while(!stack.isEmpty()) {
+				Element e = stack.pop();
+				if(e!=null && !links.containsKey(e)) {
+					links.put(e, e.saveLinks());
+					for(Element out : CompiledNetwork.outputsOf(e))
+						stack.push(out);
+				}
+			}
+			try {
+				changes.accept(this);
+				publish();
+			} catch(RuntimeException | Error e) {
+				system.clear();
+				system.putAll(registered);
+				components = null;
+				links.forEach(Element::restoreLinks);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns a network compiled from the latest published topology,
+	 * with its own flows, to be used by a single thread.
+	 * 
+	 * Taking a snapshot takes no locks, after the first one, and costs a copy of the
+	 * flows, while the topology is shared: a reader can keep simulating the same
+	 * snapshot and take a new one when {@link #getVersion()} changes.
+	 * While snapshots are in use, the topology must be changed only through
+	 * {@link #edit(Consumer)}; the state of sources, taps and multi-splits
+	 * is read from the elements at every run, as for {@link #compile()}.
+	 * 
+	 * @return the network of the calling thread
+	 */
+	public CompiledNetwork snapshot(){
+		CompiledNetwork topology = published;
+		if(topology==null) {
+			synchronized(editLock) {
+				if(published==null)
+					publish();
+				topology = published;
+			}
+		}
+		return new CompiledNetwork(topology);
+	}
+
+	/**
+	 * @return the version of the latest published topology, 0 if none
+	 */
+	public long getVersion(){
+		CompiledNetwork topology = published;
+		return topology==null ? 0 : topology.getVersion();
+	}
+
+	private void publish() {
+		CompiledNetwork topology = published;
+		long version = topology==null ? 1 : topology.getVersion()+1;
+		published = new CompiledNetwork(getElements(), version);
+	}
 
 // R6
 	/**
 	 * Prints the layout of the system starting at each Source
 	 */
 	public String layout(){
-		//TODO: to be implemented
-		StringBuffer s = new StringBuffer();
-		
-		for(Element x : system) {
-			if(x instanceof  Source )
-				s=x.printLayout(s);	
+		StringBuilder s = new StringBuilder();
+		try {
+			layout(s);
+		} catch(IOException e) {
+			// never thrown by a StringBuilder
+			throw new UncheckedIOException(e);
 		}
-		
 		return s.toString();
 	}
 
+	/**
+	 * Writes the layout of the system starting at each Source,
+	 * as returned by {@link #layout()}, without building it in memory.
+	 * 
+	 * The layout is written in many small pieces, unbuffered
+	 * destinations should be wrapped e.g. in a {@link java.io.BufferedWriter}.
+	 * 
+	 * @param out the destination of the layout
+	 * @throws IOException in case of errors writing to the destination
+	 */
+	public void layout(Appendable out) throws IOException {
+		SimulationMetrics m = metrics;
+		long start = m==null ? 0 : System.nanoTime();
+		LayoutWriter w = new LayoutWriter(out, 0);
+		for(Element x : system.values()) {
+			if(x instanceof  Source )
+				Traversal.layout(x, w);
+		}
+		if(m!=null)
+			m.record(SimulationMetrics.LAYOUT, start);
+	}
+
+	/**
+	 * Writes the elements reachable from each Source in JSON lines format,
+	 * one object per line, in the same order as the layout:
+	 * <pre>
+	 * {"name":"Src","type":"Source","flow":20.0,"outputs":["Tap"]}
+	 * {"name":"Tap","type":"Tap","open":true,"outputs":["MS"]}
+	 * {"name":"MS","type":"Multi Split","proportions":[0.5,0.5],"outputs":["Sink A",null]}
+	 * </pre>
+	 * where unconnected outputs are {@code null}.
+	 * 
+	 * @param out the destination of the elements
+	 * @throws IOException in case of errors writing to the destination
+	 */
+	public void exportJson(Appendable out) throws IOException {
+		Deque<Element> stack = new ArrayDeque<>();
+		for(Element x : system.values()) {
+			if(!(x instanceof Source))
+				continue;
+			stack.push(x);
+			while(!stack.isEmpty()) {
+				Element e = stack.pop();
+				Element[] outputs = CompiledNetwork.outputsOf(e);
+				out.append("{\"name\":");
+				json(out, e.getName());
+				out.append(",\"type\":");
+				json(out, CompiledNetwork.TYPES[CompiledNetwork.kindOf(e)]);
+				if(e instanceof Source)
+					out.append(",\"flow\":").append(Double.toString(((Source)e).getFlow()));
+				else if(e instanceof Tap)
+					out.append(",\"open\":").append(Boolean.toString(((Tap)e).isOpen()));
+				else if(e instanceof Multisplit && ((Multisplit)e).getProportions()!=null) {
+					double[] p = ((Multisplit)e).getProportions();
+					out.append(",\"proportions\":[");
+					for(int i=0; i<p.length; i++)
+						out.append(i>0 ? "," : "").append(Double.toString(p[i]));
+					out.append(']');
+				}
+				out.append(",\"outputs\":[");
+				for(int i=0; i<outputs.length; i++) {
+					if(i>0)
+						out.append(',');
+					if(outputs[i]!=null)
+						json(out, outputs[i].getName());
+					else
+						out.append("null");
+				}
+				out.append("]}\n");
+				for(int i=outputs.length-1; i>=0; i--)
+					if(outputs[i]!=null)
+						stack.push(outputs[i]);
+			}
+		}
+	}
+
+	private static void json(Appendable out, String text) throws IOException {
+		out.append('"');
+		for(int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			if(c=='"' || c=='\\')
+				out.append('\\').append(c);
+			else if(c<0x20)
+				out.append(String.format("\\u%04x", (int)c));
+			else
+				out.append(c);
+		}
+		out.append('"');
+	}
+
 // R7
 	/**
 	 * Deletes a previously added element with the given name from the system
+	 * @return {@code false} if the element cannot be removed, e.g. a split with many outputs
 	 */
 	public boolean deleteElement(String name) {
-		boolean out=true;
-		Element[] tmp = new Element[MAX_ELEMENTS];
-		int i=0;
-		for( Element x : system ) {
-			if( x!=null ) {
-				if(x.getName().equals(name) ) {
-					out=x.delete(name);
-					if(!out)
-						tmp[i++]=x;	
-				}
-				else
-					tmp[i++]=x;
-			}
+		SimulationMetrics m = metrics;
+		long start = m==null ? 0 : System.nanoTime();
+		Element x = system.get(name);
+		if(x==null)
+			return true;
+		boolean out=x.delete(name);
+		if(out) {
+			system.remove(name);
+			components=null;
 		}
-		system=tmp;
-		nElements=i;
+		if(m!=null)
+			m.record(SimulationMetrics.DELETE, start);
 		return out;
 	}
 
@@ -91,10 +489,15 @@ public class HSystem {
 	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
 		simulate(observer);
 		if(enableMaxFlowCheck) {
-			for(Element x : system) {
+			SimulationMetrics m = metrics;
+			long start = m==null ? 0 : System.nanoTime();
+			SimulationObserver obs = m==null ? observer : m.instrument(observer);
+			for(Element x : system.values()) {
 				if(x instanceof  Source )
-					x.testFlow(0.0, observer);	
+					x.testFlow(0.0, obs);	
 			}
+			if(m!=null)
+				m.record(SimulationMetrics.MAX_FLOW_CHECK, start);
 		}
 
 	}
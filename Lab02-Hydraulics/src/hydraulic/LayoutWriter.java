@@ -0,0 +1,68 @@
+package hydraulic;
+
+import java.io.IOException;
+
+/**
+ * Writes the layout of a system to an {@link Appendable}, keeping track
+ * of the current column, that is used as padding to align the outputs of the splits.
+ *
+ * Padding is written in chunks of a single cached string of spaces,
+ * so no padding string is built for the individual splits.
+ */
+public final class LayoutWriter {
+
+	private static final String SPACES = " ".repeat(256);
+
+	private final Appendable out;
+	private long column;
+
+	/**
+	 * @param out the destination of the layout
+	 * @param column column of the last line already written to the destination
+	 */
+	LayoutWriter(Appendable out, long column) {
+		this.out = out;
+		this.column = column;
+	}
+
+	/**
+	 * Appends a text to the layout
+	 *
+	 * @param text the text
+	 * @return this writer
+	 * @throws IOException in case of errors of the destination
+	 */
+	public LayoutWriter append(String text) throws IOException {
+		out.append(text);
+		int nl = text.lastIndexOf('\n');
+		column = nl<0 ? column + text.length() : text.length()-nl-1;
+		return this;
+	}
+
+	/**
+	 * @return column of the next character
+	 */
+	public long column() {
+		return column;
+	}
+
+	/**
+	 * Writes the separator between two outputs of a split,
+	 * aligned at the given column
+	 */
+	void separator(long padding) throws IOException {
+		append("\n");
+		spaces(padding);
+		append("|\n");
+		spaces(padding);
+	}
+
+	private void spaces(long n) throws IOException {
+		while(n>0) {
+			int k = (int)Math.min(n, SPACES.length());
+			out.append(SPACES, 0, k);
+			column += k;
+			n -= k;
+		}
+	}
+}
@@ -40,42 +40,53 @@ public class Multisplit extends Split {
 	 * @param proportions the proportions of flow for each output
 	 */
 	public void setProportions(double... proportions) {
-		proportion = new double [proportions.length];
 		double s=0;
 		for (double d : proportions) 
 			s+=d;
 		if(s==1.0)
 			this.proportion=proportions.clone();
 		else {
+			// the flows are blocked until valid proportions are given
+			proportion = new double [proportions.length];
 			System.out.println("Wrong proportions");
 			return;
 		}
 	}
 	
+	double[] getProportions() {
+		return proportion;
+	}
+
+	/**
+	 * Restores proportions previously returned by {@link #getProportions()}, without checks
+	 */
+	void restoreProportions(double[] proportions) {
+		this.proportion = proportions;
+	}
+	
 	@Override
-	public void elementSimulate(double prevFlow, SimulationObserver observer) {
+	protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		
-		double[] tmp = Arrays.copyOf(proportion, proportion.length);
+		// the observer may keep the flows, they cannot be reused
+		double[] tmp = new double[proportion.length];
 		for(int i=0; i<proportion.length; ++i)
-			tmp[i]*=prevFlow;
+			tmp[i]=prevFlow*proportion[i];
 		
 		observer.notifyFlow("Multi Split", getName(), prevFlow, tmp);
-		for(int i=0; i<outputs.length; i++) {
-			outputs[i].elementSimulate(prevFlow*proportion[i], observer);
+		for(int i=outputs.length-1; i>=0; i--) {
+			next.push(outputs[i], prevFlow*proportion[i]);
 		}
 	}
 	
 	@Override
-	protected void testFlow(double prevFlow, SimulationObserver observer) {
+	protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		if(prevFlow>getMaxFlow()) 
 			observer.notifyFlowError("Multi Split", getName(), prevFlow, getMaxFlow());
 		
-		for(int i=0; i<outputs.length; i++) {
+		for(int i=outputs.length-1; i>=0; i--) {
 			if(outputs[i]!=null)
-				outputs[i].testFlow(prevFlow*proportion[i], observer);
+				next.push(outputs[i], prevFlow*proportion[i]);
 		}
-
-		
 	}
 	
 }
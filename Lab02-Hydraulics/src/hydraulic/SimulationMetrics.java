@@ -0,0 +1,224 @@
+package hydraulic;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics collected by an {@link HSystem} while simulating and editing the network.
+ *
+ * Metrics are enabled with {@link HSystem#setMetrics(SimulationMetrics)}; when they
+ * are disabled the system only checks for their absence once per operation and
+ * once per source, so they can stay available in production.
+ * When enabled, each notification to the observer is counted and timed.
+ *
+ * Times are collected in histograms with power of two buckets, so the
+ * percentiles are upper bounds within a factor of two of the actual value.
+ * All the values can be updated by many threads at once, e.g. during
+ * {@link HSystem#simulateParallel(SimulationObserver)}, and can be read
+ * directly or through JMX after {@link #register(String)}.
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+	static final String SIMULATE = "simulate";
+	static final String SIMULATE_PARALLEL = "simulateParallel";
+	static final String MAX_FLOW_CHECK = "maxFlowCheck";
+	static final String LAYOUT = "layout";
+	static final String DELETE = "deleteElement";
+
+	private final Map<String,LongAdder> visits = new ConcurrentHashMap<>();
+	private final LongAdder errors = new LongAdder();
+	private final Map<String,Histogram> sources = new ConcurrentHashMap<>();
+	private final Histogram observer = new Histogram();
+	private final Map<String,Histogram> operations = new ConcurrentHashMap<>();
+
+	/**
+	 * Wraps an observer so that its notifications are counted and timed
+	 */
+	SimulationObserver instrument(SimulationObserver target) {
+		return (level, type, name, inFlow, flows) -> {
+			if(level==SimulationObserver.Level.Status)
+				visits.computeIfAbsent(type, k -> new LongAdder()).increment();
+			else
+				errors.increment();
+			long start = System.nanoTime();
+			target.notify(level, type, name, inFlow, flows);
+			observer.record(System.nanoTime() - start);
+		};
+	}
+
+	/**
+	 * Simulates and times the network of a source
+	 */
+	void simulate(Source src, SimulationObserver instrumented) {
+		long start = System.nanoTime();
+		src.elementSimulate(SimulationObserver.NO_FLOW, instrumented);
+		sources.computeIfAbsent(src.getName(), k -> new Histogram()).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Records the time of an operation started at the given time
+	 */
+	void record(String operation, long start) {
+		operations.computeIfAbsent(operation, k -> new Histogram()).record(System.nanoTime() - start);
+	}
+
+	@Override
+	public Map<String,Long> getVisits() {
+		Map<String,Long> m = new TreeMap<>();
+		visits.forEach((type, n) -> m.put(type, n.sum()));
+		return m;
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public Map<String,Summary> getSourceTimes() {
+		return summaries(sources);
+	}
+
+	@Override
+	public Summary getObserverLatency() {
+		return observer.summary();
+	}
+
+	@Override
+	public Map<String,Summary> getOperationTimes() {
+		return summaries(operations);
+	}
+
+	private static Map<String,Summary> summaries(Map<String,Histogram> histograms) {
+		Map<String,Summary> m = new TreeMap<>();
+		histograms.forEach((name, h) -> m.put(name, h.summary()));
+		return m;
+	}
+
+	@Override
+	public void reset() {
+		visits.clear();
+		errors.reset();
+		sources.clear();
+		observer.reset();
+		operations.clear();
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server,
+	 * as {@code hydraulic:type=SimulationMetrics,name=}<i>name</i>
+	 *
+	 * @param name name identifying the system
+	 * @return the name of the registered MBean
+	 * @throws JMException if the MBean cannot be registered, e.g. the name is already used
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName on = ObjectName.getInstance("hydraulic:type=SimulationMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+		return on;
+	}
+
+	/**
+	 * Summary of a histogram of times, in nanoseconds
+	 */
+	public static class Summary {
+		private final long count;
+		private final long mean;
+		private final long p50;
+		private final long p99;
+		private final long max;
+
+		Summary(long count, long mean, long p50, long p99, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+		public long getMean() {
+			return mean;
+		}
+		/**
+		 * @return upper bound of the median
+		 */
+		public long getP50() {
+			return p50;
+		}
+		/**
+		 * @return upper bound of the 99th percentile
+		 */
+		public long getP99() {
+			return p99;
+		}
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + " mean=" + mean + " p50=" + p50 + " p99=" + p99 + " max=" + max;
+		}
+	}
+
+	/**
+	 * Histogram of times with a bucket for each power of two
+	 */
+	static class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE+1);
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long nanos) {
+			buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+			total.add(nanos);
+			if(nanos>max.get())
+				max.accumulateAndGet(nanos, Math::max);
+		}
+
+		Summary summary() {
+			long count = 0;
+			long[] b = new long[buckets.length()];
+			for(int i=0; i<b.length; i++)
+				count += b[i] = buckets.get(i);
+			return new Summary(count, count==0 ? 0 : total.sum()/count,
+					percentile(b, count, 0.50), percentile(b, count, 0.99), max.get());
+		}
+
+		private static long percentile(long[] b, long count, double q) {
+			long rank = (long)Math.ceil(q*count);
+			long seen = 0;
+			for(int i=0; i<b.length; i++) {
+				seen += b[i];
+				if(seen>=rank && seen>0)
+					return upper(i);
+			}
+			return 0;
+		}
+
+		/**
+		 * @return largest time in a bucket
+		 */
+		private static long upper(int bucket) {
+			return bucket>=Long.SIZE-1 ? Long.MAX_VALUE : (1L<<bucket) - 1;
+		}
+
+		void reset() {
+			for(int i=0; i<buckets.length(); i++)
+				buckets.set(i, 0);
+			total.reset();
+			max.set(0);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package hydraulic;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link SimulationMetrics}, as exposed through JMX
+ */
+public interface SimulationMetricsMXBean {
+
+	/**
+	 * @return number of elements visited by the simulations, by type of element
+	 */
+	Map<String,Long> getVisits();
+
+	/**
+	 * @return number of error notifications, e.g. elements above their maximum flow
+	 */
+	long getErrors();
+
+	/**
+	 * @return time spent simulating the network of each source, by name of the source
+	 */
+	Map<String,SimulationMetrics.Summary> getSourceTimes();
+
+	/**
+	 * @return time spent in the observer for each notification
+	 */
+	SimulationMetrics.Summary getObserverLatency();
+
+	/**
+	 * @return time spent by the operations of the system, by name of the operation
+	 */
+	Map<String,SimulationMetrics.Summary> getOperationTimes();
+
+	/**
+	 * Discards all the collected values
+	 */
+	void reset();
+}
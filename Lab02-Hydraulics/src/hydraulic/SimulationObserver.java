@@ -75,4 +75,22 @@ public interface SimulationObserver {
 		notify(Level.Error,type,name,inFlow,maxFlow);
 	}
 
+	/**
+	 * Returns an observer that forwards the notifications to the given one,
+	 * one at a time, so that it can be notified by many threads at once.
+	 * 
+	 * The notifications are forwarded while holding the lock of the given observer,
+	 * that can be used to read its state consistently during a simulation.
+	 * 
+	 * @param observer the observer to be protected
+	 * @return the thread-safe observer
+	 */
+	static SimulationObserver synchronizedObserver(SimulationObserver observer) {
+		return (level, type, name, inFlow, flows) -> {
+			synchronized(observer) {
+				observer.notify(level, type, name, inFlow, flows);
+			}
+		};
+	}
+
 }
@@ -1,5 +1,7 @@
 package hydraulic;
 
+import java.io.IOException;
+
 /**
  * Represents the sink, i.e. the terminal element of a system
  *
@@ -20,18 +22,17 @@ public class Sink extends Element {
 	}
 
 	@Override
-	public void elementSimulate(double prevFlow, SimulationObserver observer) {
+	protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		observer.notifyFlow("Sink", getName(), prevFlow, SimulationObserver.NO_FLOW);
 	}
 
 	@Override
-	protected StringBuffer printLayout(StringBuffer s) {
-		s.append("["+getName()+"]Sink");
-		return s;		
+	protected void layoutStep(LayoutWriter s, Traversal next) throws IOException {
+		s.append("[").append(getName()).append("]Sink");
 	}
 
 	@Override
-	protected void testFlow(double prevFlow, SimulationObserver observer) {
+	protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		if(prevFlow>getMaxFlow()) 
 			observer.notifyFlowError("Sink", getName(), prevFlow, getMaxFlow());
 	}
@@ -0,0 +1,273 @@
+package hydraulic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot format of an {@link HSystem}.
+ *
+ * Layout (big endian, strings are length + UTF-8 bytes):
+ * <pre>
+ * MAGIC VERSION nElements nRegistered
+ * nElements { kind name maxFlow state nOutputs { output } }
+ * </pre>
+ * where the elements added to the system come first, in the order they were added,
+ * followed by the elements only reachable from them; outputs are positions
+ * of elements, -1 if unconnected. The state is the flow of a source,
+ * 1 or 0 for a tap, the number of proportions (-1 if never set) followed
+ * by the proportions for a multi-split, nothing for the other elements.
+ */
+class Snapshot {
+
+	private static final int MAGIC = 0x48535953; // "HSYS"
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private Snapshot() {}
+
+	static void write(HSystem system, Path file) throws IOException {
+		// registered elements first, then the ones reachable from them
+		List<Element> order = new ArrayList<>(system.elements());
+		Map<Element,Integer> index = new IdentityHashMap<>();
+		for(Element e : order)
+			index.put(e, index.size());
+		Deque<Element> stack = new ArrayDeque<>();
+		for(int i=0, registered=order.size(); i<registered; i++) {
+			stack.push(order.get(i));
+			while(!stack.isEmpty())
+				for(Element out : CompiledNetwork.outputsOf(stack.pop()))
+					if(out!=null && index.putIfAbsent(out, index.size())==null) {
+						order.add(out);
+						stack.push(out);
+					}
+		}
+
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer w = new Writer(ch);
+			w.putInt(MAGIC);
+			w.putInt(VERSION);
+			w.putInt(order.size());
+			w.putInt(system.elements().size());
+			for(Element e : order) {
+				byte kind = CompiledNetwork.kindOf(e);
+				w.put(kind);
+				w.putString(e.getName());
+				w.putDouble(e.getMaxFlow());
+				switch(kind) {
+				case CompiledNetwork.SOURCE:
+					w.putDouble(((Source)e).getFlow());
+					break;
+				case CompiledNetwork.TAP:
+					w.put((byte)(((Tap)e).isOpen() ? 1 : 0));
+					break;
+				case CompiledNetwork.MULTISPLIT:
+					double[] p = ((Multisplit)e).getProportions();
+					w.putInt(p==null ? -1 : p.length);
+					if(p!=null)
+						for(double d : p)
+							w.putDouble(d);
+					break;
+				default:
+				}
+				Element[] outputs = CompiledNetwork.outputsOf(e);
+				w.putInt(outputs.length);
+				for(Element out : outputs)
+					w.putInt(out==null ? -1 : index.get(out));
+			}
+			w.flush();
+		}
+	}
+
+	static HSystem read(Path file) throws IOException {
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if(b.remaining()<8 || b.getInt()!=MAGIC)
+				throw new IOException("Not a hydraulic system snapshot: " + file);
+			int version = b.getInt();
+			if(version!=VERSION)
+				throw new IOException("Unsupported snapshot version " + version);
+
+			// every element takes at least its kind, name length, max flow and number of outputs
+			int n = length(b, b.getInt(), 1 + Integer.BYTES + Double.BYTES + Integer.BYTES);
+			int registered = b.getInt();
+			if(registered<0 || registered>n)
+				throw new IOException("Corrupted snapshot: " + file);
+			Element[] elements = new Element[n];
+			// outputs of element i are connections[first[i]] .. connections[first[i+1]-1]
+			int[] first = new int[n+1];
+			int[] connections = new int[Math.max(16, n)];
+			int nConnections = 0;
+			for(int i=0; i<n; i++) {
+				byte kind = b.get();
+				String name = getString(b);
+				double maxFlow = b.getDouble();
+				double flow = 0.0;
+				boolean open = false;
+				double[] p = null;
+				switch(kind) {
+				case CompiledNetwork.SOURCE:
+					flow = b.getDouble();
+					break;
+				case CompiledNetwork.TAP:
+					open = b.get()!=0;
+					break;
+				case CompiledNetwork.MULTISPLIT:
+					int np = b.getInt();
+					if(np>=0) {
+						p = new double[length(b, np, Double.BYTES)];
+						for(int j=0; j<np; j++)
+							p[j] = b.getDouble();
+					}
+					break;
+				default:
+				}
+				int m = length(b, b.getInt(), Integer.BYTES);
+
+				Element e;
+				switch(kind) {
+				case CompiledNetwork.SOURCE:
+					Source src = new Source(name);
+					src.setFlow(flow);
+					e = src;
+					break;
+				case CompiledNetwork.TAP:
+					Tap tap = new Tap(name);
+					tap.setOpen(open);
+					e = tap;
+					break;
+				case CompiledNetwork.SPLIT:
+					e = new Split(name);
+					break;
+				case CompiledNetwork.MULTISPLIT:
+					Multisplit ms = new Multisplit(name, m);
+					ms.restoreProportions(p);
+					e = ms;
+					break;
+				case CompiledNetwork.SINK:
+					e = new Sink(name);
+					break;
+				default:
+					throw new IOException("Corrupted snapshot: " + file);
+				}
+				// the maximum flow of a source cannot be set
+				if(kind!=CompiledNetwork.SOURCE)
+					e.setMaxFlow(maxFlow);
+				elements[i] = e;
+
+				first[i] = nConnections;
+				if(nConnections+m>connections.length)
+					connections = Arrays.copyOf(connections, Math.max(connections.length*2, nConnections+m));
+				for(int j=0; j<m; j++)
+					connections[nConnections++] = b.getInt();
+			}
+			first[n] = nConnections;
+
+			for(int i=0; i<n; i++) {
+				Element e = elements[i];
+				for(int k=first[i], j=0; k<first[i+1]; k++, j++) {
+					int c = connections[k];
+					if(c<0)
+						continue;
+					if(e instanceof Split)
+						((Split)e).connect(elements[c], j);
+					else
+						e.connect(elements[c]);
+				}
+			}
+
+			HSystem system = new HSystem();
+			for(int i=0; i<registered; i++)
+				system.addElement(elements[i]);
+			return system;
+		} catch(RuntimeException e) {
+			// buffer underflows, invalid lengths and positions and duplicate names
+			throw new IOException("Corrupted snapshot: " + file, e);
+		}
+	}
+
+	/**
+	 * Checks a length read from the file against the bytes left,
+	 * before allocating anything for it
+	 *
+	 * @param n the length
+	 * @param size minimum number of bytes of each item
+	 * @return the length
+	 */
+	private static int length(ByteBuffer b, int n, int size) {
+		if(n<0 || n>b.remaining()/size)
+			throw new IllegalArgumentException("Invalid length " + n);
+		return n;
+	}
+
+	private static String getString(ByteBuffer b) {
+		byte[] bytes = new byte[length(b, b.getInt(), 1)];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Buffers the values and writes them to the channel in large blocks
+	 */
+	private static class Writer {
+		private final FileChannel ch;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Writer(FileChannel ch) {
+			this.ch = ch;
+		}
+
+		void put(byte v) throws IOException {
+			ensure(1);
+			buf.put(v);
+		}
+
+		void putInt(int v) throws IOException {
+			ensure(Integer.BYTES);
+			buf.putInt(v);
+		}
+
+		void putDouble(double v) throws IOException {
+			ensure(Double.BYTES);
+			buf.putDouble(v);
+		}
+
+		void putString(String s) throws IOException {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			if(bytes.length>buf.capacity()) {
+				flush();
+				ByteBuffer big = ByteBuffer.wrap(bytes);
+				while(big.hasRemaining())
+					ch.write(big);
+			} else {
+				ensure(bytes.length);
+				buf.put(bytes);
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while(buf.hasRemaining())
+				ch.write(buf);
+			buf.clear();
+		}
+
+		private void ensure(int n) throws IOException {
+			if(buf.remaining()<n)
+				flush();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package hydraulic;
 
+import java.io.IOException;
+
 /**
  * Represents a source of water, i.e. the initial element for the simulation.
  *
@@ -27,27 +29,27 @@ public class Source extends Element {
 	public void setFlow(double flow){
 		this.flow=flow;
 	}
+	
+	double getFlow() {
+		return flow;
+	}
 
 
 	@Override
-	public void elementSimulate(double prevFlow, SimulationObserver observer) {
+	protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		observer.notifyFlow("Source", getName(), prevFlow, this.flow);
-		getOutput().elementSimulate(this.flow, observer);
+		next.push(getOutput(), this.flow);
 	}
 
 
 	@Override
-	protected StringBuffer printLayout(StringBuffer s) {
-		
-		
-		s.append("["+getName()+"]Source ");
+	protected void layoutStep(LayoutWriter s, Traversal next) throws IOException {
+		s.append("[").append(getName()).append("]Source ");
 		if(getOutput()!=null) {
 			s.append(" -> ");
-			getOutput().printLayout(s);
+			next.push(getOutput(), 0.0);
 		}else 
 			s.append("*");
-	
-		return s;		
 	}
 
 	
@@ -58,8 +60,8 @@ public class Source extends Element {
 
 
 	@Override
-	protected void testFlow(double prevFlow, SimulationObserver observer) {
-			getOutput().testFlow(flow, observer);
+	protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
+		next.push(getOutput(), flow);
 	}
 
 }
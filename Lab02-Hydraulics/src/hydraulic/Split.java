@@ -1,5 +1,6 @@
 package hydraulic;
 
+import java.io.IOException;
 import java.util.Arrays;
 
 /**
@@ -59,30 +60,43 @@ public class Split extends Element{
 	}
 
 	@Override
-	public void elementSimulate(double prevFlow, SimulationObserver observer) {
+	protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
 
 		observer.notifyFlow("Split", getName(), prevFlow, new double []{prevFlow/2, prevFlow/2});
-		outputs[0].elementSimulate(prevFlow/2, observer);
-		outputs[1].elementSimulate(prevFlow/2, observer);
+		next.push(outputs[1], prevFlow/2);
+		next.push(outputs[0], prevFlow/2);
 	}
 
 	@Override
-	protected StringBuffer printLayout(StringBuffer s) {
-		s.append("["+getName()+"]Split ");
-		int l=s.length();
-		String padding = String.format("%"+l+"s","");
-		for( int i=0; i<outputs.length; i++) {
+	protected void layoutStep(LayoutWriter s, Traversal next) throws IOException {
+		s.append("[").append(getName()).append("]Split ");
+		// outputs are aligned below the first one
+		long padding = s.column();
+		for( int i=outputs.length-1; i>=0; i--) {
 			if(outputs[i]!=null) {
-				s.append("+-> ");
-				outputs[i].printLayout(s);
 				if(i<outputs.length-1)
-					s.append("\n"+padding+"|\n"+padding+"");
-			}else 
-				s.append("+-> *\n"+padding+"|\n"+padding+"");
+					next.pushSeparator(padding);
+				next.push(outputs[i], 0.0);
+				next.push("+-> ");
+			}else {
+				next.pushSeparator(padding);
+				next.push("+-> *");
+			}
 		}
-		return s;		
 	}
 	
+	@Override
+	Links saveLinks() {
+		return new Links(getInput(), getOutput(), outputs.clone(), nOutputs);
+	}
+
+	@Override
+	void restoreLinks(Links links) {
+		super.restoreLinks(links);
+		outputs = links.outputs();
+		nOutputs = links.nOutputs();
+	}
+
 	@Override
 	public boolean delete(String name) {
 		if(nOutputs==1) {
@@ -99,13 +113,13 @@ public class Split extends Element{
 
 
 	@Override
-	protected void testFlow(double prevFlow, SimulationObserver observer) {
+	protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		if(prevFlow>getMaxFlow()) 
 			observer.notifyFlowError("Split", getName(), prevFlow, getMaxFlow());
 		
-		for(Element x : outputs)
-			if(x!=null)
-				x.testFlow(prevFlow, observer);	
+		for(int i=outputs.length-1; i>=0; i--)
+			if(outputs[i]!=null)
+				next.push(outputs[i], prevFlow/2);
 	}
 	
 
@@ -1,5 +1,7 @@
 package hydraulic;
 
+import java.io.IOException;
+
 /**
  * Represents a tap that can interrupt the flow.
  * 
@@ -28,42 +30,34 @@ public class Tap extends Element {
 	public void setOpen(boolean open){
 		this.open=open;
 	}
+	
+	boolean isOpen() {
+		return open;
+	}
 
 	@Override
-	public void elementSimulate(double prevFlow, SimulationObserver observer) {
-		
-		if(open) {
-			observer.notifyFlow("Tap", getName(), prevFlow, prevFlow);
-			getOutput().elementSimulate(prevFlow, observer);
-		}else {
-			observer.notifyFlow("Tap", getName(), prevFlow, 0.0);
-			getOutput().elementSimulate(0.0, observer);
-		}
-		
-		
+	protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
+		double outFlow = open ? prevFlow : 0.0;
+		observer.notifyFlow("Tap", getName(), prevFlow, outFlow);
+		next.push(getOutput(), outFlow);
 	}
 
 	@Override
-	protected StringBuffer printLayout(StringBuffer s) {
-		s.append("["+getName()+"]Tap");
+	protected void layoutStep(LayoutWriter s, Traversal next) throws IOException {
+		s.append("[").append(getName()).append("]Tap");
 		if(getOutput()!=null) {
 			s.append(" -> ");
-			getOutput().printLayout(s);
+			next.push(getOutput(), 0.0);
 		}else 
 			s.append("*");
-		
-		return s;
 	}
 
 	@Override
-	protected void testFlow(double prevFlow, SimulationObserver observer) {
+	protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
 		if(prevFlow>getMaxFlow()) 
 			observer.notifyFlowError("Tap", getName(), prevFlow, getMaxFlow());
 	
-		if(open)
-			getOutput().testFlow(prevFlow, observer);
-		else
-			getOutput().testFlow(0.0, observer);
+		next.push(getOutput(), open ? prevFlow : 0.0);
 	}
 	
 	
@@ -0,0 +1,174 @@
+package hydraulic;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Time-stepped simulation of a {@link CompiledNetwork}, where the flows of some
+ * sources and the openings of some taps follow schedules over the steps.
+ *
+ * At every step the schedules are evaluated, only the sub-networks downstream of
+ * the sources and taps that changed are re-computed, and the observer is notified;
+ * the steps allocate no memory, so observers reading the flows through
+ * {@link CompiledNetwork#getInFlow(int)} keep the whole loop allocation-free.
+ *
+ * The schedules never change the elements: a following
+ * {@link CompiledNetwork#simulate(SimulationObserver)} goes back to their state,
+ * while {@link CompiledNetwork#update(SimulationObserver)} re-computes only
+ * the sub-networks whose state differs from the last step.
+ */
+public class TransientSimulation {
+
+	/**
+	 * Receives the results of every step
+	 */
+	@FunctionalInterface
+	public interface Observer {
+		/**
+		 * Called once the flows of a step have been computed
+		 *
+		 * @param step the step, starting from 0
+		 * @param network the network, whose flows can be read with {@link CompiledNetwork#getInFlow(int)}
+		 */
+		void step(long step, CompiledNetwork network);
+
+		/**
+		 * Creates an observer notifying at every step the flows of all
+		 * the elements, in depth-first order, to a {@link SimulationObserver}
+		 *
+		 * @param observer the observer receiving the notifications
+		 * @return the step observer
+		 */
+		static Observer notifying(SimulationObserver observer) {
+			return new Observer() {
+				private CompiledNetwork network;
+				private FlowObserver flows;
+
+				@Override
+				public void step(long step, CompiledNetwork net) {
+					if(net!=network) {
+						network = net;
+						flows = net.adapt(observer);
+					}
+					net.notifyFlows(flows);
+				}
+			};
+		}
+	}
+
+	private final CompiledNetwork net;
+	// scheduled sources and taps, by position in the network
+	private int[] scheduled = new int[0];
+	private LongToDoubleFunction[] flows = new LongToDoubleFunction[0];
+	private LongPredicate[] openings = new LongPredicate[0];
+	private long step;
+
+	/**
+	 * Creates a transient simulation, starting from the current state of the elements
+	 *
+	 * @param network the compiled network
+	 */
+	public TransientSimulation(CompiledNetwork network) {
+		this.net = network;
+	}
+
+	/**
+	 * Defines the flow of a source at every step, replacing any previous schedule
+	 *
+	 * @param source the source
+	 * @param schedule flow of the source, given the step
+	 */
+	public void setFlow(Source source, LongToDoubleFunction schedule) {
+		int k = slot(source);
+		flows[k] = schedule;
+		openings[k] = null;
+	}
+
+	/**
+	 * Defines whether a tap is open at every step, replacing any previous schedule
+	 *
+	 * @param tap the tap
+	 * @param schedule opening status of the tap, given the step
+	 */
+	public void setOpen(Tap tap, LongPredicate schedule) {
+		int k = slot(tap);
+		openings[k] = schedule;
+		flows[k] = null;
+	}
+
+	/**
+	 * @return position of the schedule of the element, added if missing
+	 */
+	private int slot(Element e) {
+		int i = net.indexOf(e);
+		if(i<0)
+			throw new IllegalArgumentException("Element " + e.getName() + " is not part of the network");
+		int k = Arrays.binarySearch(scheduled, i);
+		if(k>=0)
+			return k;
+		// kept in depth-first order, so that upstream changes are applied first
+		k = -k-1;
+		scheduled = insert(scheduled, k, i);
+		flows = insert(flows, k, null);
+		openings = insert(openings, k, null);
+		return k;
+	}
+
+	private static int[] insert(int[] a, int k, int v) {
+		int[] b = new int[a.length+1];
+		System.arraycopy(a, 0, b, 0, k);
+		b[k] = v;
+		System.arraycopy(a, k, b, k+1, a.length-k);
+		return b;
+	}
+
+	private static <T> T[] insert(T[] a, int k, T v) {
+		T[] b = Arrays.copyOf(a, a.length+1);
+		System.arraycopy(a, k, b, k+1, a.length-k);
+		b[k] = v;
+		return b;
+	}
+
+	/**
+	 * @return the next step to be simulated
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * Restarts the simulation from step 0 and from the current state of the elements
+	 */
+	public void reset() {
+		step = 0;
+	}
+
+	/**
+	 * Simulates the given number of steps, continuing from the last one
+	 *
+	 * @param steps number of steps
+	 * @param observer the observer receiving the results of every step, may be {@code null}
+	 */
+	public void run(long steps, Observer observer) {
+		if(step==0)
+			net.prepare();
+		int[] scheduled = this.scheduled;
+		LongToDoubleFunction[] flows = this.flows;
+		LongPredicate[] openings = this.openings;
+		for(long end=step+steps; step<end; ) {
+			long t = step;
+			net.begin();
+			for(int k=0; k<scheduled.length; k++) {
+				if(flows[k]!=null)
+					net.apply(scheduled[k], flows[k].applyAsDouble(t));
+				else
+					net.apply(scheduled[k], openings[k].test(t) ? 1.0 : 0.0);
+			}
+			// counted before notifying, in case the observer stops the run
+			step = t+1;
+			if(observer!=null)
+				observer.step(t, net);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package hydraulic;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Explicit-stack traversal of the network downstream of an element,
+ * shared by the simulation, the maximum flow check and the layout.
+ * It is passed to the visit hooks of {@link Element}, that use it to
+ * schedule the visit of their outputs.
+ *
+ * Each element, when visited, performs its own step and pushes the elements
+ * connected to its outputs, last output first, together with their input flow;
+ * the layout also pushes the text and the separators to be printed between the outputs.
+ * The elements are therefore visited in the same depth-first order as
+ * a recursive visit, while the stack depth of the caller stays constant.
+ */
+public final class Traversal {
+
+	// marks a separator, whose padding is stored as the flow
+	private static final Object SEPARATOR = new Object();
+
+	private Object[] items = new Object[16];
+	private double[] flows = new double[16];
+	private int size;
+
+	private Traversal() {}
+
+	/**
+	 * Simulates the network downstream of an element
+	 */
+	static void simulate(Element start, double inFlow, SimulationObserver observer) {
+		Traversal t = new Traversal();
+		t.push(start, inFlow);
+		while(t.size>0) {
+			int k = --t.size;
+			Element e = (Element)t.items[k];
+			t.items[k] = null;
+			e.simulateStep(t.flows[k], observer, t);
+		}
+	}
+
+	/**
+	 * Checks the maximum flows of the network downstream of an element
+	 */
+	static void testFlow(Element start, double inFlow, SimulationObserver observer) {
+		Traversal t = new Traversal();
+		t.push(start, inFlow);
+		while(t.size>0) {
+			int k = --t.size;
+			Element e = (Element)t.items[k];
+			t.items[k] = null;
+			e.testFlowStep(t.flows[k], observer, t);
+		}
+	}
+
+	/**
+	 * Writes the layout of the network downstream of an element
+	 */
+	static void layout(Element start, LayoutWriter w) throws IOException {
+		Traversal t = new Traversal();
+		t.push(start, 0.0);
+		while(t.size>0) {
+			int k = --t.size;
+			Object item = t.items[k];
+			t.items[k] = null;
+			if(item==SEPARATOR)
+				w.separator((long)t.flows[k]);
+			else if(item instanceof String)
+				w.append((String)item);
+			else
+				((Element)item).layoutStep(w, t);
+		}
+	}
+
+	/**
+	 * Schedules the visit of an element, {@code null} elements fail when visited
+	 * as they would in a recursive visit
+	 *
+	 * @param e the element
+	 * @param inFlow input flow of the element
+	 */
+	public void push(Element e, double inFlow) {
+		ensure();
+		items[size] = e;
+		flows[size++] = inFlow;
+	}
+
+	/**
+	 * Schedules a text to be appended to the layout
+	 *
+	 * @param text the text
+	 */
+	public void push(String text) {
+		ensure();
+		items[size++] = text;
+	}
+
+	/**
+	 * Schedules a separator between the outputs of a split
+	 *
+	 * @param padding column of the first output of the split
+	 */
+	public void pushSeparator(long padding) {
+		ensure();
+		items[size] = SEPARATOR;
+		flows[size++] = padding;
+	}
+
+	private void ensure() {
+		if(size==items.length) {
+			items = Arrays.copyOf(items, size*2);
+			flows = Arrays.copyOf(flows, size*2);
+		}
+	}
+}
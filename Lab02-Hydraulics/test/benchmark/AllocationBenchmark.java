@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark of the memory allocated per simulated element by
+ * the recursive simulation, the compiled simulation notifying a
+ * {@link SimulationObserver} and the compiled simulation notifying a {@link FlowObserver},
+ * and the memory allocated by an incremental update after a change of the source.
+ *
+ * Requires a JVM supporting {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.AllocationBenchmark}
+ */
+public class AllocationBenchmark {
+
+	private static final int DEPTH = 14;
+	private static final int ROUNDS = 50;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Publishes the flows it receives, so that the JIT compiler
+	 * cannot remove their allocation, as a real observer would
+	 */
+	private static class Publish implements SimulationObserver, FlowObserver {
+		volatile double[] last;
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			last = flows;
+		}
+
+		@Override
+		public void notifyFlow(int element, double inFlow, double[] outFlows) {
+			last = outFlows;
+		}
+	}
+
+	public static void main(String[] args) {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(1000);
+		s.addElement(src);
+		src.connect(SimulationBenchmark.tree("E", DEPTH));
+		CompiledNetwork net = s.compile();
+		int n = net.size();
+		System.out.printf("%,d elements%n", n);
+
+		Publish obs = new Publish();
+		for(int round=0; round<3; ++round) {
+			long recursive = allocated(() -> s.simulate(obs));
+			long compiled = allocated(() -> net.simulate(obs));
+			long primitive = allocated(() -> net.simulateFlows(obs));
+			double[] flow = {1000};
+			long incremental = allocated(() -> {
+				flow[0] = 1999 - flow[0];
+				src.setFlow(flow[0]);
+				net.updateFlows(obs);
+			});
+			System.out.printf("bytes/element: recursive %6.2f  compiled %6.2f  flow observer %6.2f"
+					+ "  bytes/update: %,d%n",
+					(double)recursive/n, (double)compiled/n, (double)primitive/n, incremental);
+		}
+	}
+
+	/**
+	 * @return average bytes allocated by a run, after a warm-up
+	 */
+	private static long allocated(Runnable run) {
+		for(int i=0; i<ROUNDS; ++i)
+			run.run();
+		long id = Thread.currentThread().getId();
+		long before = THREADS.getThreadAllocatedBytes(id);
+		for(int i=0; i<ROUNDS; ++i)
+			run.run();
+		return (THREADS.getThreadAllocatedBytes(id) - before) / ROUNDS;
+	}
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark of simulations on {@link HSystem#snapshot() snapshots}
+ * of a tree of 3,071 elements, reporting the simulations per second of the
+ * readers alone and while an editor keeps re-wiring the network through
+ * {@link HSystem#edit(java.util.function.Consumer)}.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.ConcurrentEditBenchmark [readers]}
+ */
+public class ConcurrentEditBenchmark {
+
+	private static final long MILLIS = 2000;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws InterruptedException {
+		int readers = args.length>0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Tap root = (Tap)SimulationBenchmark.tree("E", 10);
+		src.connect(root);
+		src.setFlow(100);
+		// edited branch, next to the tree
+		Source src2 = new Source("Src2");
+		Sink sinkA = new Sink("Sink A");
+		Sink sinkB = new Sink("Sink B");
+		s.addElement(src2);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		src2.connect(sinkA);
+
+		for(int round=0; round<ROUNDS; ++round)
+			for(boolean editing : new boolean[] {false, true}) {
+				long[] runs = new long[readers];
+				AtomicBoolean running = new AtomicBoolean(true);
+				Thread[] threads = new Thread[readers];
+				for(int r=0; r<readers; r++) {
+					int id = r;
+					threads[r] = new Thread(() -> {
+						CompiledNetwork net = s.snapshot();
+						while(running.get()) {
+							if(net.getVersion()!=s.getVersion())
+								net = s.snapshot();
+							net.simulate(null);
+							runs[id]++;
+						}
+					});
+				}
+				long edits = 0;
+				long t0 = System.nanoTime();
+				for(Thread t : threads)
+					t.start();
+				long deadline = t0 + MILLIS*1_000_000;
+				while(System.nanoTime()<deadline) {
+					if(editing) {
+						// every edit re-compiles the whole network
+						Element target = edits%2==0 ? sinkB : sinkA;
+						s.edit(sys -> src2.connect(target));
+						edits++;
+					}
+					Thread.sleep(editing ? 1 : 10);
+				}
+				running.set(false);
+				for(Thread t : threads)
+					t.join();
+				long t1 = System.nanoTime();
+				long total = 0;
+				for(long n : runs)
+					total += n;
+				System.out.printf("%d readers, %-10s %,10.0f simulations/s  %,6.0f edits/s%n",
+						readers, editing ? "editing:" : "no edits:", total/((t1-t0)/1e9), edits/((t1-t0)/1e9));
+			}
+	}
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark comparing a full simulation of a compiled network
+ * with {@link CompiledNetwork#update(Element, SimulationObserver)} after
+ * toggling a single tap, as an operator console would.
+ *
+ * The toggled taps are at increasing depths, so the re-computed
+ * sub-networks get smaller.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.IncrementalBenchmark}
+ */
+public class IncrementalBenchmark {
+
+	private static final int DEPTH = 14;
+	private static final int ITERATIONS = 2_000;
+
+	public static void main(String[] args) {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(1000);
+		s.addElement(src);
+		Tap root = (Tap)SimulationBenchmark.tree("E", DEPTH);
+		src.connect(root);
+		CompiledNetwork net = s.compile();
+		SimulationBenchmark.SumObserver obs = new SimulationBenchmark.SumObserver();
+		net.simulate(obs);
+
+		Tap[] taps = new Tap[DEPTH/4 + 1];
+		taps[0] = root;
+		for(int l=1; l<taps.length; ++l) {
+			Element e = taps[l-1];
+			for(int j=0; j<4; ++j)
+				e = ((Split)e.getOutput()).getOutputs()[0];
+			taps[l] = (Tap)e;
+		}
+
+		for(int round=0; round<2; ++round) {
+			for(int level=0; level<taps.length; ++level) {
+				Tap tap = taps[level];
+				long start = System.nanoTime();
+				for(int i=0; i<ITERATIONS; ++i) {
+					tap.setOpen(i%2==0);
+					net.simulate(obs);
+				}
+				long full = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for(int i=0; i<ITERATIONS; ++i) {
+					tap.setOpen(i%2==1);
+					net.update(tap, obs);
+				}
+				long incremental = System.nanoTime() - start;
+
+				System.out.printf("elements=%,d tap depth=%2d us/change: full %8.1f incremental %8.1f (%.0f)%n",
+						net.size(), level*4, full/1e3/ITERATIONS, incremental/1e3/ITERATIONS, obs.sum);
+				tap.setOpen(true);
+				net.update(tap, null);
+			}
+		}
+	}
+}
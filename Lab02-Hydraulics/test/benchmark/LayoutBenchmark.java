@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark comparing {@link HSystem#layout()}, that builds the whole
+ * layout in memory, with {@link HSystem#layout(Appendable)} and
+ * {@link HSystem#exportJson(Appendable)} streaming to a file.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.LayoutBenchmark}
+ */
+public class LayoutBenchmark {
+
+	private static final int DEPTH = 16;
+	private static final int ROUNDS = 5;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws IOException {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		src.connect(SimulationBenchmark.tree("E", DEPTH));
+		Path file = Files.createTempFile("layout", ".txt");
+		try {
+			for(int round=0; round<ROUNDS; ++round) {
+				long id = Thread.currentThread().getId();
+				long a0 = THREADS.getThreadAllocatedBytes(id);
+				long t0 = System.nanoTime();
+				int length = s.layout().length();
+				long t1 = System.nanoTime();
+				long a1 = THREADS.getThreadAllocatedBytes(id);
+				try(Writer w = Files.newBufferedWriter(file)) {
+					s.layout(w);
+				}
+				long t2 = System.nanoTime();
+				long a2 = THREADS.getThreadAllocatedBytes(id);
+				try(Writer w = Files.newBufferedWriter(file)) {
+					s.exportJson(w);
+				}
+				long t3 = System.nanoTime();
+				long a3 = THREADS.getThreadAllocatedBytes(id);
+				System.out.printf("layout %,d chars: in memory %7.1f ms %6.1f MB  streamed %7.1f ms %6.1f MB  json %7.1f ms %6.1f MB%n",
+						length, (t1-t0)/1e6, (a1-a0)/1e6, (t2-t1)/1e6, (a2-a1)/1e6, (t3-t2)/1e6, (a3-a2)/1e6);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark of the cost of {@link SimulationMetrics}: the same
+ * simulation of a tree of 49,151 elements with metrics disabled and enabled.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.MetricsBenchmark}
+ */
+public class MetricsBenchmark {
+
+	private static final int DEPTH = 14;
+	private static final int ITERATIONS = 100;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(1000);
+		s.addElement(src);
+		src.connect(SimulationBenchmark.tree("E", DEPTH));
+		SimulationBenchmark.SumObserver obs = new SimulationBenchmark.SumObserver();
+		SimulationMetrics metrics = new SimulationMetrics();
+
+		for(int round=0; round<ROUNDS; ++round) {
+			s.setMetrics(null);
+			double disabled = time(s, obs);
+			s.setMetrics(metrics);
+			double enabled = time(s, obs);
+			System.out.printf("disabled %7.3f ms  enabled %7.3f ms  (observer p50 %d ns)%n",
+					disabled, enabled, metrics.getObserverLatency().getP50());
+		}
+		System.out.println(metrics.getOperationTimes().get("simulate"));
+	}
+
+	private static double time(HSystem s, SimulationObserver obs) {
+		long t0 = System.nanoTime();
+		for(int i=0; i<ITERATIONS; ++i)
+			s.simulate(obs);
+		return (System.nanoTime()-t0)/1e6/ITERATIONS;
+	}
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark comparing {@link HSystem#simulate(SimulationObserver)} with
+ * {@link HSystem#simulateParallel(SimulationObserver)} on a system with many
+ * sources, each feeding its own tree of taps and splits.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.ParallelBenchmark}
+ */
+public class ParallelBenchmark {
+
+	private static final int SOURCES = 64;
+	private static final int DEPTH = 10;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		HSystem s = new HSystem();
+		for(int i=0; i<SOURCES; ++i) {
+			Source src = new Source("Src" + i);
+			src.setFlow(1000);
+			s.addElement(src);
+			src.connect(SimulationBenchmark.tree("E" + i + "_", DEPTH));
+		}
+		System.out.println("parallelism " + ForkJoinPool.commonPool().getParallelism());
+
+		for(int round=0; round<ROUNDS; ++round) {
+			SimulationBenchmark.SumObserver seq = new SimulationBenchmark.SumObserver();
+			long t0 = System.nanoTime();
+			s.simulate(seq);
+			long t1 = System.nanoTime();
+			SimulationBenchmark.SumObserver par = new SimulationBenchmark.SumObserver();
+			s.simulateParallel(par);
+			long t2 = System.nanoTime();
+			if(round%4==3)
+				System.out.printf("sequential %7.2f ms  parallel %7.2f ms  (sums %.1f %.1f)%n",
+						(t1-t0)/1e6, (t2-t1)/1e6, seq.sum, par.sum);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package benchmark;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark loading a long chain of taps into an {@link HSystem}
+ * and then deleting every element but the source and the sink by name.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.RegistryBenchmark}
+ */
+public class RegistryBenchmark {
+
+	private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+	public static void main(String[] args) {
+		for(int round=0; round<3; ++round) {
+			for(int n : SIZES) {
+				long t0 = System.nanoTime();
+				HSystem s = new HSystem();
+				Source src = new Source("Src");
+				s.addElement(src);
+				Element prev = src;
+				for(int i=0; i<n; ++i) {
+					Tap t = new Tap("Tap" + i);
+					s.addElement(t);
+					prev.connect(t);
+					prev = t;
+				}
+				Sink sink = new Sink("Sink");
+				s.addElement(sink);
+				prev.connect(sink);
+				long t1 = System.nanoTime();
+				for(int i=0; i<n; i+=2)
+					s.deleteElement("Tap" + i);
+				long t2 = System.nanoTime();
+				System.out.printf("n=%,9d  load %8.1f ms  delete half %8.1f ms  remaining %,d%n",
+						n, (t1-t0)/1e6, (t2-t1)/1e6, s.elements().size());
+			}
+		}
+	}
+}
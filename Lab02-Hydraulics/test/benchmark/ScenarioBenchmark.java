@@ -0,0 +1,64 @@
+package benchmark;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark comparing a per-scenario loop, that changes the elements
+ * and simulates the system once per scenario, with a {@link ScenarioBatch}.
+ *
+ * Each scenario has its own source flow and opens or closes the first tap;
+ * the scenarios of the batch are defined once, before the measures.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.ScenarioBenchmark}
+ */
+public class ScenarioBenchmark {
+
+	private static final int SCENARIOS = 4096;
+	private static final int ROUNDS = 8;
+
+	public static void main(String[] args) {
+		for(int depth : new int[] {6, 10})
+			run(depth);
+	}
+
+	private static void run(int depth) {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Tap tap = (Tap)SimulationBenchmark.tree("E", depth);
+		src.connect(tap);
+		CompiledNetwork net = s.compile();
+		SimulationBenchmark.SumObserver obs = new SimulationBenchmark.SumObserver();
+		ScenarioBatch batch = new ScenarioBatch(net, SCENARIOS);
+		for(int sc=0; sc<SCENARIOS; ++sc) {
+			batch.setFlow(src, sc, sc);
+			batch.setOpen(tap, sc, sc%3!=0);
+		}
+
+		for(int round=0; round<ROUNDS; ++round) {
+			long start = System.nanoTime();
+			for(int sc=0; sc<SCENARIOS; ++sc) {
+				src.setFlow(sc);
+				tap.setOpen(sc%3!=0);
+				s.simulate(obs);
+			}
+			long recursive = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for(int sc=0; sc<SCENARIOS; ++sc) {
+				src.setFlow(sc);
+				tap.setOpen(sc%3!=0);
+				net.simulate(null);
+			}
+			long compiled = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			batch.simulate();
+			long batched = System.nanoTime() - start;
+
+			System.out.printf("elements=%,d scenarios/s: recursive %,10.0f compiled %,10.0f batch %,10.0f (%.0f)%n",
+					net.size(), SCENARIOS*1e9/recursive, SCENARIOS*1e9/compiled, SCENARIOS*1e9/batched, obs.sum);
+		}
+	}
+}
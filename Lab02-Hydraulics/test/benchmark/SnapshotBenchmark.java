@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark saving and loading a plant of about 1,000,000 elements:
+ * many sources, each feeding a tree of taps and splits.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.SnapshotBenchmark}
+ */
+public class SnapshotBenchmark {
+
+	private static final int SOURCES = 651;
+	private static final int DEPTH = 9;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) throws IOException {
+		long t0 = System.nanoTime();
+		HSystem s = new HSystem();
+		for(int i=0; i<SOURCES; ++i) {
+			Source src = new Source("Src" + i);
+			src.setFlow(1000);
+			s.addElement(src);
+			src.connect(SimulationBenchmark.tree("E" + i + "_", DEPTH));
+		}
+		long t1 = System.nanoTime();
+		int n = s.compile().size();
+		System.out.printf("%,d elements built in %.1f ms%n", n, (t1-t0)/1e6);
+
+		Path file = Files.createTempFile("plant", ".snapshot");
+		try {
+			for(int round=0; round<ROUNDS; ++round) {
+				long a = System.nanoTime();
+				s.saveSnapshot(file);
+				long b = System.nanoTime();
+				HSystem loaded = HSystem.loadSnapshot(file);
+				long c = System.nanoTime();
+				SimulationBenchmark.SumObserver expected = new SimulationBenchmark.SumObserver();
+				SimulationBenchmark.SumObserver actual = new SimulationBenchmark.SumObserver();
+				s.compile().simulate(expected);
+				loaded.compile().simulate(actual);
+				System.out.printf("save %7.1f ms  load %7.1f ms  (%,d bytes, sums %.1f %.1f)%n",
+						(b-a)/1e6, (c-b)/1e6, Files.size(file), expected.sum, actual.sum);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark of {@link TransientSimulation} on a small plant and
+ * on a tree of 3,071 elements, with a varying source flow and a periodic tap,
+ * reporting steps per second and bytes allocated per step.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.TransientBenchmark}
+ */
+public class TransientBenchmark {
+
+	private static final long STEPS = 5_000_000;
+	private static final int ROUNDS = 3;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		for(int depth : new int[] {2, 10}) {
+			HSystem s = new HSystem();
+			Source src = new Source("Src");
+			s.addElement(src);
+			Tap root = (Tap)SimulationBenchmark.tree("E", depth);
+			src.connect(root);
+			CompiledNetwork net = s.compile();
+			int sink = net.size()-1;
+
+			TransientSimulation sim = new TransientSimulation(net);
+			sim.setFlow(src, step -> 100 + 10*Math.sin(step*1e-3));
+			sim.setOpen(root, step -> step%1000 < 900);
+			double[] sum = new double[1];
+			TransientSimulation.Observer obs = (step, n) -> sum[0] += n.getInFlow(sink);
+
+			long steps = depth<=2 ? STEPS : STEPS/100;
+			for(int round=0; round<ROUNDS; ++round) {
+				long id = Thread.currentThread().getId();
+				long a0 = THREADS.getThreadAllocatedBytes(id);
+				long t0 = System.nanoTime();
+				sim.run(steps, obs);
+				long t1 = System.nanoTime();
+				long a1 = THREADS.getThreadAllocatedBytes(id);
+				System.out.printf("%,6d elements: %,12.0f steps/s  %.3f bytes/step%n",
+						net.size(), steps/((t1-t0)/1e9), (double)(a1-a0)/steps);
+			}
+			System.out.println("sum " + sum[0]);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package benchmark;
+
+import hydraulic.*;
+
+/**
+ * Standalone benchmark of simulation, maximum flow check and layout
+ * on a chain of 1,000,000 elements, far deeper than a recursive
+ * visit could handle with the default thread stack.
+ *
+ * Run with:
+ * {@code java -cp target/classes:target/test-classes benchmark.TraversalBenchmark}
+ */
+public class TraversalBenchmark {
+
+	private static final int N = 1_000_000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(10);
+		s.addElement(src);
+		Element prev = src;
+		for(int i=0; i<N-2; ++i) {
+			Tap t = new Tap("T" + i);
+			t.setOpen(true);
+			t.setMaxFlow(100);
+			s.addElement(t);
+			prev.connect(t);
+			prev = t;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		prev.connect(sink);
+
+		SimulationBenchmark.SumObserver obs = new SimulationBenchmark.SumObserver();
+		for(int round=0; round<ROUNDS; ++round) {
+			long t0 = System.nanoTime();
+			s.simulate(obs);
+			long t1 = System.nanoTime();
+			s.simulate(obs, true);
+			long t2 = System.nanoTime();
+			int length = s.layout().length();
+			long t3 = System.nanoTime();
+			System.out.printf("simulate %7.1f ms  simulate+check %7.1f ms  layout %7.1f ms (%,d chars)%n",
+					(t1-t0)/1e6, (t2-t1)/1e6, (t3-t2)/1e6, length);
+		}
+		System.out.println("sum " + obs.sum);
+	}
+}
@@ -0,0 +1,80 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+public class TestR10_Registry {
+
+	@Test
+	public void testManyElements() {
+		final int n = 10_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Element prev = src;
+		for(int i=0; i<n; ++i) {
+			Tap t = new Tap("Tap" + i);
+			s.addElement(t);
+			prev.connect(t);
+			prev = t;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		prev.connect(sink);
+
+		Element[] elements = s.getElements();
+		assertEquals("Wrong number of elements", n+2, elements.length);
+		assertSame("Wrong order of elements", src, elements[0]);
+		assertSame("Wrong order of elements", sink, elements[n+1]);
+		assertSame("Wrong element by name", elements[n/2+1], s.getElement("Tap" + n/2));
+
+		for(int i=0; i<n; ++i)
+			assertTrue("Operation not performed", s.deleteElement("Tap" + i));
+		assertArrayEquals("Wrong elements after delete", new Element[] {src, sink}, s.getElements());
+		OOPAssertions.assertSameElement("Output not fixed after delete", sink, src.getOutput());
+		assertNull("Deleted element still found", s.getElement("Tap0"));
+	}
+
+	@Test
+	public void testElementsView() {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Sink sink = new Sink("Sink");
+		Collection<Element> view = s.elements();
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(sink);
+		src.connect(tap);
+		tap.connect(sink);
+
+		assertEquals("View not updated after add", 3, view.size());
+		s.deleteElement("Tap");
+		assertEquals("View not updated after delete", 2, view.size());
+		assertFalse("Deleted element still in view", view.contains(tap));
+		try {
+			view.clear();
+			fail("The view should be read-only");
+		} catch(UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDuplicateName() {
+		HSystem s = new HSystem();
+		s.addElement(new Source("Src"));
+		try {
+			s.addElement(new Sink("Src"));
+			fail("Duplicate names should be rejected");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals("Wrong number of elements", 1, s.getElements().length);
+	}
+}
@@ -0,0 +1,110 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestR11_DeepNetworks {
+
+	private static final int N = 200_000;
+	private HSystem s;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(10);
+		s.addElement(src);
+		Element prev = src;
+		for(int i=0; i<N; ++i) {
+			Tap t = new Tap("T" + i);
+			t.setOpen(true);
+			t.setMaxFlow(i==N-1 ? 5 : 100);
+			s.addElement(t);
+			prev.connect(t);
+			prev = t;
+		}
+		Sink sink = new Sink("Sink");
+		sink.setMaxFlow(100);
+		s.addElement(sink);
+		prev.connect(sink);
+	}
+
+	@Test
+	public void testLongChainSimulation() {
+		int[] count = new int[1];
+		double[] last = new double[1];
+		s.simulate((level, type, name, inFlow, flows) -> { count[0]++; last[0] = inFlow; });
+		assertEquals("Wrong number of notifications", N+2, count[0]);
+		assertEquals("Wrong flow at the end of the chain", 10.0, last[0], 0.0);
+	}
+
+	@Test
+	public void testLongChainMaxFlow() {
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs, true);
+		assertTrue("Missing notification at the end of the chain", obs.contains("Sink"));
+		assertEquals("Wrong number of error notifications", 1, obs.getErrorCount());
+		assertTrue("Missing error notification", obs.containsError("T" + (N-1)));
+	}
+
+	@Test
+	public void testLongChainLayout() {
+		String layout = s.layout();
+		assertTrue("Wrong start of layout", layout.startsWith("[Src]Source  -> [T0]Tap -> [T1]Tap"));
+		assertTrue("Wrong end of layout", layout.endsWith("[T" + (N-1) + "]Tap -> [Sink]Sink"));
+	}
+
+	@Test
+	public void testCustomElement() {
+		HSystem hs = new HSystem();
+		Source src = new Source("Src");
+		Reducer r = new Reducer("R");
+		Sink sink = new Sink("Sink");
+		hs.addElement(src);
+		hs.addElement(r);
+		hs.addElement(sink);
+		src.connect(r);
+		r.connect(sink);
+		src.setFlow(10);
+
+		double[] sinkFlow = new double[1];
+		hs.simulate((level, type, name, inFlow, flows) -> {
+			if(name.equals("Sink"))
+				sinkFlow[0] = inFlow;
+		});
+		assertEquals("Wrong flow downstream of a custom element", 5.0, sinkFlow[0], 0.0);
+		assertTrue("Missing custom element in the layout", hs.layout().contains("[R]Reducer -> [Sink]Sink"));
+	}
+
+	/**
+	 * Element defined outside the package, halving its input flow
+	 */
+	private static class Reducer extends Element {
+		Reducer(String name) {
+			super(name);
+		}
+
+		@Override
+		protected void simulateStep(double prevFlow, SimulationObserver observer, Traversal next) {
+			observer.notifyFlow("Reducer", getName(), prevFlow, prevFlow/2);
+			next.push(getOutput(), prevFlow/2);
+		}
+
+		@Override
+		protected void layoutStep(LayoutWriter s, Traversal next) throws IOException {
+			s.append("[").append(getName()).append("]Reducer -> ");
+			next.push(getOutput(), 0.0);
+		}
+
+		@Override
+		protected void testFlowStep(double prevFlow, SimulationObserver observer, Traversal next) {
+			next.push(getOutput(), prevFlow/2);
+		}
+	}
+}
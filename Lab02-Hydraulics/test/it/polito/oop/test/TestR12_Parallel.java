@@ -0,0 +1,92 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TestR12_Parallel {
+
+	private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+	private static HSystem system(int sources) {
+		HSystem s = new HSystem();
+		for(int i=0; i<sources; ++i) {
+			Source src = new Source("Src" + i);
+			Tap tap = new Tap("Tap" + i);
+			Split t = new Split("T" + i);
+			Sink a = new Sink("A" + i);
+			Sink b = new Sink("B" + i);
+			s.addElement(src);
+			s.addElement(tap);
+			s.addElement(t);
+			s.addElement(a);
+			s.addElement(b);
+			src.connect(tap);
+			tap.connect(t);
+			t.connect(a, 0);
+			t.connect(b, 1);
+			src.setFlow(i);
+			tap.setOpen(i%2==0);
+		}
+		return s;
+	}
+
+	private static List<String> trace(HSystem s, boolean parallel) {
+		List<String> events = new ArrayList<>();
+		SimulationObserver obs = (level, type, name, inFlow, flows) ->
+				events.add(type + " " + name + " " + inFlow + " " + Arrays.toString(flows));
+		if(parallel)
+			s.simulateParallel(obs, pool);
+		else
+			s.simulate(obs);
+		return events;
+	}
+
+	@Test
+	public void testSameNotifications() {
+		HSystem s = system(200);
+		List<String> expected = trace(s, false);
+		List<String> actual = trace(s, true);
+		assertEquals("Wrong number of notifications", 1000, actual.size());
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals("Wrong notifications", expected, actual);
+	}
+
+	@Test
+	public void testOrderWithinSubNetwork() {
+		HSystem s = system(50);
+		List<String> events = trace(s, true);
+		for(int i=0; i<50; ++i) {
+			int src = events.indexOf("Source Src" + i + " NaN [" + (double)i + "]");
+			assertTrue("Missing notification", src>=0);
+			assertTrue("Wrong order", events.indexOf("Sink B" + i + " " + (i%2==0 ? i/2.0 : 0.0) + " [NaN]") > src);
+		}
+	}
+
+	@Test
+	public void testSharedElement() {
+		HSystem s = new HSystem();
+		Source s1 = new Source("S1");
+		Source s2 = new Source("S2");
+		Sink sink = new Sink("Sink");
+		s.addElement(s1);
+		s.addElement(s2);
+		s.addElement(sink);
+		s1.connect(sink);
+		s2.connect(sink);
+		s1.setFlow(1);
+		s2.setFlow(2);
+
+		assertEquals("Sources feeding the same element should be simulated in order",
+				trace(s, false), trace(s, true));
+	}
+}
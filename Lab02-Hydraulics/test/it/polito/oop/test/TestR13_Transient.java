@@ -0,0 +1,90 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestR13_Transient {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Sink sinkA;
+	private Sink sinkB;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		Split t = new Split("T");
+		sinkA = new Sink("Sink A");
+		sinkB = new Sink("Sink B");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(sinkA,0);
+		t.connect(sinkB,1);
+		src.setFlow(10);
+		tap.setOpen(true);
+	}
+
+	@Test
+	public void testSchedules() {
+		CompiledNetwork net = s.compile();
+		int a = net.indexOf(sinkA);
+		TransientSimulation sim = new TransientSimulation(net);
+		sim.setFlow(src, step -> 2.0*step);
+		sim.setOpen(tap, step -> step%3!=2);
+
+		List<Double> flows = new ArrayList<>();
+		sim.run(6, (step, n) -> flows.add(n.getInFlow(a)));
+		assertEquals(List.of(0.0, 1.0, 0.0, 3.0, 4.0, 0.0), flows);
+		assertEquals("Wrong next step", 6, sim.getStep());
+
+		flows.clear();
+		sim.run(2, (step, n) -> flows.add(n.getInFlow(a)));
+		assertEquals("The run should continue from the last step", List.of(6.0, 7.0), flows);
+	}
+
+	@Test
+	public void testElementsUnchanged() {
+		CompiledNetwork net = s.compile();
+		int a = net.indexOf(sinkA);
+		TransientSimulation sim = new TransientSimulation(net);
+		sim.setFlow(src, step -> 100);
+		sim.run(3, null);
+		assertEquals(50.0, net.getInFlow(a), 0.0);
+
+		net.update(null);
+		assertEquals("The update should go back to the state of the elements", 5.0, net.getInFlow(a), 0.0);
+
+		sim.run(1, null);
+		assertEquals(50.0, net.getInFlow(a), 0.0);
+		sim.reset();
+		src.setFlow(30);
+		sim.setOpen(tap, step -> false);
+		sim.run(1, null);
+		assertEquals("The closed tap should stop the flow", 0.0, net.getInFlow(a), 0.0);
+	}
+
+	@Test
+	public void testNotifyingObserver() {
+		CompiledNetwork net = s.compile();
+		TransientSimulation sim = new TransientSimulation(net);
+		sim.setFlow(src, step -> step);
+		StoreObserver obs = new StoreObserver();
+		sim.run(5, TransientSimulation.Observer.notifying(obs));
+		assertEquals("Wrong flow at the last step", 2.0, obs.inFlowOf("Sink B"), 0.0);
+	}
+}
@@ -0,0 +1,100 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestR14_Metrics {
+
+	private HSystem s;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Split t = new Split("T");
+		Sink sinkA = new Sink("Sink A");
+		Sink sinkB = new Sink("Sink B");
+		Source src2 = new Source("Src2");
+		Sink sinkC = new Sink("Sink C");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		s.addElement(src2);
+		s.addElement(sinkC);
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(sinkA,0);
+		t.connect(sinkB,1);
+		src2.connect(sinkC);
+		src.setFlow(20);
+		tap.setOpen(true);
+		tap.setMaxFlow(100);
+		t.setMaxFlow(100);
+		sinkA.setMaxFlow(5);
+		sinkB.setMaxFlow(100);
+	}
+
+	@Test
+	public void testDisabled() {
+		assertNull("Metrics should be disabled by default", s.getMetrics());
+		s.simulate(new StoreObserver());
+	}
+
+	@Test
+	public void testCounters() {
+		SimulationMetrics m = new SimulationMetrics();
+		s.setMetrics(m);
+		s.simulate(new StoreObserver(), true);
+		s.layout();
+
+		Map<String,Long> visits = m.getVisits();
+		assertEquals("Wrong number of source visits", 2L, (long)visits.get("Source"));
+		assertEquals("Wrong number of sink visits", 3L, (long)visits.get("Sink"));
+		assertEquals("Wrong number of split visits", 1L, (long)visits.get("Split"));
+		assertEquals("Wrong number of errors", 1, m.getErrors());
+		assertEquals("Wrong number of observer calls", 8, m.getObserverLatency().getCount());
+
+		assertEquals("Wrong sources", "[Src, Src2]", m.getSourceTimes().keySet().toString());
+		assertEquals(1, m.getSourceTimes().get("Src").getCount());
+		Map<String,SimulationMetrics.Summary> ops = m.getOperationTimes();
+		assertEquals(1, ops.get("simulate").getCount());
+		assertEquals(1, ops.get("maxFlowCheck").getCount());
+		assertEquals(1, ops.get("layout").getCount());
+		assertTrue("Wrong percentiles", ops.get("layout").getP99() >= ops.get("layout").getP50());
+
+		m.reset();
+		assertTrue("Metrics not reset", m.getVisits().isEmpty());
+		assertEquals(0, m.getObserverLatency().getCount());
+	}
+
+	@Test
+	public void testJmx() throws JMException {
+		SimulationMetrics m = new SimulationMetrics();
+		s.setMetrics(m);
+		ObjectName name = m.register("TestR14");
+		try {
+			s.simulate(new StoreObserver());
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			CompositeData latency = (CompositeData)server.getAttribute(name, "ObserverLatency");
+			assertEquals("Wrong number of observer calls", 7L, latency.get("count"));
+			assertEquals(0L, server.getAttribute(name, "Errors"));
+		} finally {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+	}
+}
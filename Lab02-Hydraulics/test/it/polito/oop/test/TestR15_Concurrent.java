@@ -0,0 +1,150 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestR15_Concurrent {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Sink sinkA;
+	private Sink sinkB;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		sinkA = new Sink("Sink A");
+		sinkB = new Sink("Sink B");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		src.connect(tap);
+		tap.connect(sinkA);
+		src.setFlow(10);
+		tap.setOpen(true);
+	}
+
+	@Test
+	public void testVersions() {
+		assertEquals("No version published yet", 0, s.getVersion());
+		CompiledNetwork before = s.snapshot();
+		assertEquals("Wrong version of the first snapshot", 1, before.getVersion());
+		assertEquals("Snapshots should not publish new versions", 1, s.snapshot().getVersion());
+
+		s.edit(sys -> {
+			Split t = new Split("T");
+			sys.addElement(t);
+			tap.connect(t);
+			t.connect(sinkA,0);
+			t.connect(sinkB,1);
+		});
+		assertEquals("Wrong version after the edit", 2, s.getVersion());
+
+		CompiledNetwork after = s.snapshot();
+		assertEquals("Wrong version of the new snapshot", 2, after.getVersion());
+		assertEquals("Wrong size of the new topology", 5, after.size());
+		assertEquals("The old snapshot should keep its topology", 3, before.size());
+		assertEquals("The old snapshot should not see the new elements", -1, before.indexOf(sinkB));
+
+		after.simulate(null);
+		assertEquals("Wrong flow in new topology", 5.0, after.getInFlow(after.indexOf(sinkB)), 0.0);
+		assertEquals("Compiled networks have no version", 0, s.compile().getVersion());
+	}
+
+	@Test
+	public void testFailedEdit() {
+		s.snapshot();
+		try {
+			s.edit(sys -> sys.addElement(new Sink("Sink A")));
+			fail("Duplicate element should be rejected");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals("A failed edit should not publish a version", 1, s.getVersion());
+	}
+
+	@Test
+	public void testFailedEditRollback() {
+		CompiledNetwork before = s.snapshot();
+		try {
+			s.edit(sys -> {
+				Split t = new Split("T");
+				sys.addElement(t);
+				tap.connect(t);
+				t.connect(sinkA,0);
+				t.connect(sinkB,1);
+				sys.deleteElement("Sink B");
+				throw new IllegalStateException("failure halfway");
+			});
+			fail("The exception of the edit should be thrown");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+		assertSame("Connections not restored", sinkA, tap.getOutput());
+		assertSame("Connections not restored", tap, sinkA.getInput());
+		assertNull("Added element not removed", s.getElement("T"));
+		assertNotNull("Deleted element not restored", s.getElement("Sink B"));
+		assertEquals("A failed edit should not publish a version", before.getVersion(), s.getVersion());
+
+		s.edit(sys -> {});
+		CompiledNetwork after = s.snapshot();
+		assertEquals("Half-applied topology published", before.size(), after.size());
+		after.simulate(null);
+		assertEquals("Wrong flow after the rollback", 10.0, after.getInFlow(after.indexOf(sinkA)), 0.0);
+	}
+
+	@Test
+	public void testConcurrentEdits() throws Exception {
+		int readers = 3;
+		ExecutorService pool = Executors.newFixedThreadPool(readers+1);
+		AtomicBoolean running = new AtomicBoolean(true);
+		try {
+			Future<?>[] results = new Future<?>[readers];
+			for(int r=0; r<readers; r++)
+				results[r] = pool.submit(() -> {
+					int runs = 0;
+					CompiledNetwork net = s.snapshot();
+					while(running.get() || runs==0) {
+						if(net.getVersion()!=s.getVersion())
+							net = s.snapshot();
+						net.simulate(null);
+						int a = net.indexOf(sinkA);
+						int b = net.indexOf(sinkB);
+						double total = (a<0 ? 0 : net.getInFlow(a)) + (b<0 ? 0 : net.getInFlow(b));
+						assertEquals("The flow should reach exactly one sink", 10.0, total, 0.0);
+						runs++;
+					}
+					return runs;
+				});
+
+			Future<?> editor = pool.submit(() -> {
+				for(int i=0; i<2000; i++) {
+					Sink target = i%2==0 ? sinkB : sinkA;
+					s.edit(sys -> tap.connect(target));
+				}
+			});
+			editor.get(30, TimeUnit.SECONDS);
+			running.set(false);
+			for(Future<?> f : results)
+				assertTrue("Readers should complete some simulations", (Integer)f.get(30, TimeUnit.SECONDS) > 0);
+			assertEquals("Wrong final version", 2001, s.getVersion());
+		} finally {
+			running.set(false);
+			pool.shutdownNow();
+		}
+	}
+}
@@ -2,6 +2,11 @@ package it.polito.oop.test;
 
 import hydraulic.*;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
 import org.junit.Test;
 
 public class TestR6_Visualization {
@@ -94,4 +99,55 @@ public class TestR6_Visualization {
 		OOPAssertions.assertEndsWith("Missing '*' for unconnected output", layout, "*");
 	}
 
+	@Test
+	public void testStreamingLayout() throws IOException {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Multisplit ms = new Multisplit("MS",3);
+		Sink s1 = new Sink("S1");
+		Sink s2 = new Sink("S2");
+		Sink s3 = new Sink("S3");
+		s.addElement(src);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(s1);
+		s.addElement(s2);
+		s.addElement(s3);
+		src.connect(t);
+		t.connect(ms,0);
+		t.connect(s3,1);
+		ms.connect(s1,0);
+		ms.connect(s2,2);
+
+		StringWriter out = new StringWriter();
+		s.layout(out);
+		assertEquals("Streamed layout differs", s.layout(), out.toString());
+	}
+
+	@Test
+	public void testJsonExport() throws IOException {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Multisplit ms = new Multisplit("MS",2);
+		Sink s1 = new Sink("S\"1");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(ms);
+		s.addElement(s1);
+		src.connect(tap);
+		tap.connect(ms);
+		ms.connect(s1,0);
+		src.setFlow(20);
+		tap.setOpen(true);
+		ms.setProportions(.5,.5);
+
+		StringBuilder out = new StringBuilder();
+		s.exportJson(out);
+		assertEquals("{\"name\":\"Src\",\"type\":\"Source\",\"flow\":20.0,\"outputs\":[\"Tap\"]}\n"
+				+ "{\"name\":\"Tap\",\"type\":\"Tap\",\"open\":true,\"outputs\":[\"MS\"]}\n"
+				+ "{\"name\":\"MS\",\"type\":\"Multi Split\",\"proportions\":[0.5,0.5],\"outputs\":[\"S\\\"1\",null]}\n"
+				+ "{\"name\":\"S\\\"1\",\"type\":\"Sink\",\"outputs\":[]}\n", out.toString());
+	}
 }
@@ -2,6 +2,9 @@ package it.polito.oop.test;
 
 import hydraulic.*;
 import static org.junit.Assert.*;
+
+import java.util.Map;
+
 import org.junit.Test;
 
 
@@ -69,7 +72,58 @@ public class TestR8_MaxFlow {
 		assertEquals("Wrong max flow of 'Tap'", 90.0, obs.maxFlowOf("Tap"), 0.01);
 	}
 
-	
+	@Test
+	public void testMaxSourceFlows(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Split t = new Split("T");
+		Multisplit ms = new Multisplit("MS",2);
+		Sink sinkA = new Sink("Sink A");
+		Sink sinkB = new Sink("Sink B");
+		Sink sinkC = new Sink("Sink C");
+		Source src2 = new Source("Src2");
+		Tap closed = new Tap("Closed");
+		Sink sinkD = new Sink("Sink D");
+		for(Element e : new Element[] {src, tap, t, ms, sinkA, sinkB, sinkC, src2, closed, sinkD})
+			s.addElement(e);
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms,0);
+		t.connect(sinkC,1);
+		ms.connect(sinkA,0);
+		ms.connect(sinkB,1);
+		src2.connect(closed);
+		closed.connect(sinkD);
+		tap.setOpen(true);
+		ms.setProportions(.25,.75);
+
+		tap.setMaxFlow(100);
+		t.setMaxFlow(80);
+		ms.setMaxFlow(30);
+		sinkA.setMaxFlow(5);
+		sinkB.setMaxFlow(18);
+		sinkC.setMaxFlow(50);
+		closed.setMaxFlow(10);
+
+		Map<Source,Double> flows = s.compile().maxSourceFlows();
+		assertEquals("Wrong max flow of 'Src'", 40.0, flows.get(src), 0.0);
+		assertEquals("Wrong max flow of 'Src2'", 10.0, flows.get(src2), 0.0);
+
+		src.setFlow(flows.get(src));
+		src2.setFlow(flows.get(src2));
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs,true);
+		assertEquals("No error expected at the max flows", 0, obs.getErrorCount());
+
+		src.setFlow(41);
+		obs = new StoreObserver();
+		s.simulate(obs,true);
+		assertEquals("Expected one error notification", 1, obs.getErrorCount());
+		assertTrue("There was no error notification for element Sink A",obs.containsError("Sink A"));
+	}
+
 	//---------- utility class: observer that collects a log of notification events -----------ù
 	
 
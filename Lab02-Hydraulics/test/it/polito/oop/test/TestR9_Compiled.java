@@ -0,0 +1,265 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestR9_Compiled {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Multisplit ms;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		ms = new Multisplit("MS",3);
+		Split t = new Split("T");
+		Sink sinkA = new Sink("Sink A");
+		Sink sinkB = new Sink("Sink B");
+		Sink sinkC = new Sink("Sink C");
+		Sink sinkD = new Sink("Sink D");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(ms);
+		s.addElement(t);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		s.addElement(sinkC);
+		s.addElement(sinkD);
+
+		src.connect(tap);
+		tap.connect(ms);
+		ms.connect(t,0);
+		ms.connect(sinkC,1);
+		ms.connect(sinkD,2);
+		t.connect(sinkA,0);
+		t.connect(sinkB,1);
+
+		src.setFlow(20);
+		tap.setOpen(true);
+		ms.setProportions(.25,.35,.40);
+	}
+
+	@Test
+	public void testSameNotifications(){
+		CompiledNetwork net = s.compile();
+		assertEquals("Wrong number of compiled elements", 8, net.size());
+
+		assertEquals(trace(s, null), trace(null, net));
+	}
+
+	@Test
+	public void testRerunAfterChanges(){
+		CompiledNetwork net = s.compile();
+		net.simulate(null);
+
+		src.setFlow(100);
+		ms.setProportions(.5,.3,.2);
+		assertEquals(trace(s, null), trace(null, net));
+
+		tap.setOpen(false);
+		assertEquals(trace(s, null), trace(null, net));
+		for(int i=0; i<net.size(); ++i)
+			if(net.getElement(i) instanceof Sink)
+				assertEquals("Closed tap should stop the flow", 0.0, net.getInFlow(i), 0.0);
+	}
+
+	@Test
+	public void testIncompleteNetwork(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(t);
+		s.addElement(sink);
+		src.connect(t);
+		t.connect(sink,1);
+		src.setFlow(10);
+
+		CompiledNetwork net = s.compile();
+		List<String> events = trace(null, net);
+		assertEquals("Wrong number of notifications", 3, events.size());
+		assertEquals("Sink Sink 5.0 [NaN]", events.get(2));
+	}
+
+	@Test
+	public void testIncrementalUpdate(){
+		CompiledNetwork net = s.compile();
+		net.simulate(null);
+
+		tap.setOpen(false);
+		List<String> events = new ArrayList<>();
+		net.update(tap, (level, type, name, inFlow, flows) -> events.add(name));
+		assertEquals("Tap and all the downstream elements changed",
+				Arrays.asList("Tap", "MS", "T", "Sink A", "Sink B", "Sink C", "Sink D"), events);
+
+		tap.setOpen(true);
+		net.update(null);
+		ms.setProportions(.25,.40,.35);
+		events.clear();
+		net.update((level, type, name, inFlow, flows) -> events.add(name));
+		assertEquals("Only the changed outputs should be notified",
+				Arrays.asList("MS", "Sink C", "Sink D"), events);
+
+		events.clear();
+		net.update((level, type, name, inFlow, flows) -> events.add(name));
+		assertTrue("Nothing changed", events.isEmpty());
+
+		assertEquals(trace(s, null), trace(null, net));
+	}
+
+	@Test
+	public void testScenarioBatch(){
+		CompiledNetwork net = s.compile();
+		ScenarioBatch batch = new ScenarioBatch(net, 3);
+		batch.setFlow(src, 1, 100);
+		batch.setOpen(tap, 2, false);
+		batch.setProportions(ms, 1, .5, .3, .2);
+		batch.simulate();
+
+		double[][] expected = new double[3][];
+		src.setFlow(20);
+		net.simulate(null);
+		expected[0] = flows(net);
+		src.setFlow(100);
+		ms.setProportions(.5,.3,.2);
+		net.simulate(null);
+		expected[1] = flows(net);
+		src.setFlow(20);
+		ms.setProportions(.25,.35,.40);
+		tap.setOpen(false);
+		net.simulate(null);
+		expected[2] = flows(net);
+
+		for(int sc=0; sc<3; ++sc)
+			for(int i=0; i<net.size(); ++i)
+				assertEquals("Wrong flow of " + net.getElement(i).getName() + " in scenario " + sc,
+						expected[sc][i], batch.getInFlow(net.getElement(i), sc), 1e-9);
+	}
+
+	@Test
+	public void testLargeBatch(){
+		CompiledNetwork net = s.compile();
+		ScenarioBatch batch = new ScenarioBatch(net, 10_000);
+		for(int sc=0; sc<batch.size(); ++sc)
+			batch.setFlow(src, sc, sc);
+		batch.simulate();
+
+		Element sinkC = s.getElements()[6];
+		for(int sc=0; sc<batch.size(); ++sc)
+			assertEquals(sc*.35, batch.getInFlow(sinkC, sc), 1e-9);
+	}
+
+	@Test
+	public void testFlowObserver(){
+		CompiledNetwork net = s.compile();
+		List<String> events = new ArrayList<>();
+		net.simulateFlows((i, inFlow, flows) ->
+				events.add(net.getType(i) + " " + net.getElement(i).getName() + " " + inFlow + " " + Arrays.toString(flows)));
+		assertEquals(trace(s, null), events);
+
+		double[][] buffers = new double[net.size()][];
+		net.simulateFlows((i, inFlow, flows) -> buffers[i] = flows);
+		src.setFlow(40);
+		net.simulateFlows((i, inFlow, flows) ->
+				assertSame("Output buffers should be reused", buffers[i], flows));
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		tap.setMaxFlow(15);
+		Path file = Files.createTempFile("hsystem", ".snapshot");
+		try {
+			s.saveSnapshot(file);
+			HSystem restored = HSystem.loadSnapshot(file);
+
+			assertEquals("Wrong number of elements", s.getElements().length, restored.getElements().length);
+			assertEquals(s.layout(), restored.layout());
+			assertEquals(trace(s, null), trace(restored, null));
+			assertEquals("Wrong max flow", 15.0, restored.getElement("Tap").getMaxFlow(), 0.0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testSnapshotUnregistered() throws IOException {
+		HSystem partial = new HSystem();
+		partial.addElement(src);
+		Path file = Files.createTempFile("hsystem", ".snapshot");
+		try {
+			partial.saveSnapshot(file);
+			HSystem restored = HSystem.loadSnapshot(file);
+
+			assertEquals("Only added elements should be restored", 1, restored.getElements().length);
+			assertEquals(trace(s, null), trace(restored, null));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testSnapshotCorrupted() throws IOException {
+		Path file = Files.createTempFile("hsystem", ".snapshot");
+		try {
+			s.saveSnapshot(file);
+			byte[] valid = Files.readAllBytes(file);
+			// number of elements, length of the first name, truncated file
+			int[] offsets = {8, 17};
+			for(int offset : offsets) {
+				ByteBuffer corrupted = ByteBuffer.wrap(valid.clone());
+				corrupted.putInt(offset, Integer.MAX_VALUE-8);
+				Files.write(file, corrupted.array());
+				assertCorrupted(file);
+			}
+			Files.write(file, Arrays.copyOf(valid, valid.length/2));
+			assertCorrupted(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void assertCorrupted(Path file) {
+		try {
+			HSystem.loadSnapshot(file);
+			fail("Corrupted snapshot should be rejected");
+		} catch(IOException e) {
+			assertTrue("Wrong message: " + e.getMessage(), e.getMessage().startsWith("Corrupted snapshot"));
+		}
+	}
+
+	private static double[] flows(CompiledNetwork net) {
+		double[] flows = new double[net.size()];
+		for(int i=0; i<flows.length; ++i)
+			flows[i] = net.getInFlow(i);
+		return flows;
+	}
+
+	private static List<String> trace(HSystem s, CompiledNetwork net) {
+		List<String> events = new ArrayList<>();
+		SimulationObserver obs = (level, type, name, inFlow, flows) ->
+				events.add(type + " " + name + " " + inFlow + " " + Arrays.toString(flows));
+		if(net!=null)
+			net.simulate(obs);
+		else
+			s.simulate(obs);
+		return events;
+	}
+}